@@ -0,0 +1,162 @@
+package com.example.picsy_engine;
+
+import java.util.Arrays;
+
+/**
+ * 評価行列 E の非対角のうち結合しきい値以上の要素（強い取引関係）を無向グラフとみなしたときの連結成分。
+ * しきい値は行ごとの相対値で、行 i では threshold × (1-E_ii)/(N-1)
+ * （i の非対角の総額を他の N-1 人へ均等に配ったときの1件分の threshold 倍）を下限とする。
+ * 絶対値で切ると、多人数に薄く広く払う共同体ほど1件あたりが小さくなり、ばらばらに分かれてしまうため。
+ *
+ * VCB 変換後の定常方程式は、A を E の非対角部分、b_i = E_ii として
+ *   (I + B/(N-1) - A^T) c = 1   （を sum(c)=N にスケール）
+ * と書けて、仮想中央銀行のランク1項は右辺の定数 1 に吸収される。
+ * しきい値0（非ゼロすべて）なら左辺は成分ごとのブロック対角になり、成分ごとに独立に解ける。
+ * しきい値より弱い取引は成分をつながず、ブロック間の結合としてソルバが反復で解く
+ * （ContributionCalculator#calculate(double[][], ContributionBlocks)）。
+ * 分割は解の正しさには影響せず、速さだけを左右する。
+ *
+ * 不変オブジェクト。取引による結合・メンバー追加は新しいインスタンスを返す（O(n)）。
+ */
+public final class ContributionBlocks {
+
+    private final int[] label;    // index → 成分番号（0..count-1、初出順）
+    private final int[][] groups; // 成分番号 → index 一覧（昇順）
+
+    private ContributionBlocks(int[] rawLabel){
+        int n = rawLabel.length;
+        int[] map = new int[n+1];
+        Arrays.fill(map, -1);
+        int[] sizes = new int[n+1];
+        label = new int[n];
+        int count = 0;
+        for(int i=0;i<n;i++){
+            int r = rawLabel[i];
+            if(map[r]<0) map[r] = count++;
+            label[i] = map[r];
+            sizes[label[i]]++;
+        }
+        groups = new int[count][];
+        for(int k=0;k<count;k++) groups[k] = new int[sizes[k]];
+        int[] fill = new int[count];
+        for(int i=0;i<n;i++) groups[label[i]][fill[label[i]]++] = i;
+    }
+
+    /** E の非対角の非ゼロをすべて辺として成分を求める（O(n^2)） */
+    public static ContributionBlocks of(double[][] E){ return of(E, 0.0); }
+
+    /** E の非対角を全走査し、行ごとの下限 cutoff(threshold, E_ii, N) 以上の要素だけを辺として成分を求める（O(n^2)） */
+    public static ContributionBlocks of(double[][] E, double threshold){
+        int n = E.length;
+        int[] parent = identity(n);
+        for(int i=0;i<n;i++){
+            double[] row = E[i];
+            double cut = cutoff(threshold, row[i], n);
+            for(int j=0;j<n;j++) if(j!=i && couples(row[j], cut)) union(parent, i, j);
+        }
+        return new ContributionBlocks(roots(parent));
+    }
+
+    /** float32 保存用 */
+    public static ContributionBlocks of(float[][] E, double threshold){
+        int n = E.length;
+        int[] parent = identity(n);
+        for(int i=0;i<n;i++){
+            float[] row = E[i];
+            double cut = cutoff(threshold, row[i], n);
+            for(int j=0;j<n;j++) if(j!=i && couples(row[j], cut)) union(parent, i, j);
+        }
+        return new ContributionBlocks(roots(parent));
+    }
+
+    /** 行 i（自己評価 self = E_ii、メンバー数 n）で成分をつなぐ取引の下限: threshold × (1-E_ii)/(N-1) */
+    public static double cutoff(double threshold, double self, int n){
+        return n>1 ? threshold*(1.0-self)/(n-1) : 0.0;
+    }
+
+    /** 取引 E_ij = weight が成分をつなぐか（非ゼロかつ行 i の下限 cutoff 以上） */
+    public static boolean couples(double weight, double cutoff){
+        return weight!=0.0 && weight>=cutoff;
+    }
+
+    public int size(){ return label.length; }
+
+    /** 成分の数 */
+    public int count(){ return groups.length; }
+
+    /** index i の成分番号 */
+    public int component(int i){ return label[i]; }
+
+    /** 成分 k に属する index（昇順）。内部配列なので書き換えないこと */
+    public int[] members(int k){ return groups[k]; }
+
+    /** i→j の取引が加わったときの構造（既に同じ成分なら this） */
+    public ContributionBlocks linked(int i, int j){
+        if(label[i]==label[j]) return this;
+        int[] parent = identity(count());
+        union(parent, label[i], label[j]);
+        return relabel(parent, label.length);
+    }
+
+    /**
+     * N→N+1 に拡張した行列での構造。新メンバー（最後の index）の行と列だけを見て結合する。
+     * 既存メンバー間で新たに下限以上になった取引はつながない（差分更新は結合のみ。分割は解に影響しない）。
+     */
+    public ContributionBlocks grown(double[][] expandedE, double threshold){
+        int n = label.length;
+        if(expandedE.length!=n+1) throw new IllegalArgumentException("expected size "+(n+1));
+        int[] parent = identity(count()+1);
+        int fresh = count();
+        double cut = cutoff(threshold, expandedE[n][n], n+1);
+        for(int j=0;j<n;j++){
+            if(couples(expandedE[n][j], cut) || couples(expandedE[j][n], cutoff(threshold, expandedE[j][j], n+1))) union(parent, label[j], fresh);
+        }
+        return relabel(parent, n+1);
+    }
+
+    /** 同じ分割なら等しい（成分番号は初出順に振るので label の一致で判定できる） */
+    @Override
+    public boolean equals(Object o){
+        return o instanceof ContributionBlocks other && Arrays.equals(label, other.label);
+    }
+
+    @Override
+    public int hashCode(){ return Arrays.hashCode(label); }
+
+    @Override
+    public String toString(){ return "ContributionBlocks"+Arrays.toString(label); }
+
+    // ===== union-find helpers =====
+
+    /** 成分番号の union-find 結果で index を振り直す（size>n なら末尾は新成分） */
+    private ContributionBlocks relabel(int[] parent, int size){
+        int[] raw = new int[size];
+        for(int i=0;i<size;i++) raw[i] = find(parent, i<label.length ? label[i] : count());
+        return new ContributionBlocks(raw);
+    }
+
+    private static int[] identity(int n){
+        int[] p = new int[n];
+        for(int i=0;i<n;i++) p[i]=i;
+        return p;
+    }
+
+    private static int[] roots(int[] parent){
+        int[] r = new int[parent.length];
+        for(int i=0;i<r.length;i++) r[i] = find(parent, i);
+        return r;
+    }
+
+    private static int find(int[] parent, int x){
+        while(parent[x]!=x){
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private static void union(int[] parent, int a, int b){
+        int ra = find(parent, a), rb = find(parent, b);
+        if(ra!=rb) parent[Math.max(ra,rb)] = Math.min(ra,rb);
+    }
+}
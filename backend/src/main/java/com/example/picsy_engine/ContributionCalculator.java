@@ -2,6 +2,9 @@ package com.example.picsy_engine;
 
 import org.ejml.simple.SimpleMatrix;
 
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
 /**
  * PICSY の貢献度ベクトル c を計算する中核クラス。
  *
@@ -16,11 +19,15 @@ import org.ejml.simple.SimpleMatrix;
  * 注意:
  * - EJML の SimpleMatrix の行数は numRows() で取得します（getNumRows()は存在しません）。
  * - 収束判定は L1 ノルム差 < EPS。
+ * - float32 保存モード用に float[][] を直接受け取る版もある（E' は作らず、累積は double）。
+ * - 取引グラフのブロックごとに並列で解くブロック分解版もある（ContributionBlocks 参照）。
+ *   ブロック間に弱い取引が残っていてもよい（ブロック反復＋集約補正で結合を解く）。
  */
 public class ContributionCalculator {
 
     private static final int MAX_ITERATIONS = 500; // 反復上限
     private static final double EPS = 1e-9;        // 収束しきい値
+    private static final int DIRECT_LIMIT = 256;   // ブロック分解版: この大きさまでは逆行列で直接解く（集約方程式はこのブロック数まで）
 
     /** 与えられた評価行列 E (行和=1) から貢献度ベクトル c を返す */
     public SimpleMatrix calculate(SimpleMatrix evaluationMatrix) {
@@ -59,6 +66,395 @@ public class ContributionCalculator {
         return c;
     }
 
+    /**
+     * float32 保存の評価行列 E (行和=1) から貢献度ベクトル c を返す。
+     * E' = E - B + (B*D)/(N-1) を実体化せず、行 i を読みながら
+     *   (E'^T c)_j += c_i * (E_ij + E_ii/(N-1))   (j != i)
+     * を足し込む。行列の読み出しは float、内積の累積は double。
+     */
+    public double[] calculate(float[][] evaluationMatrix) {
+        int n = evaluationMatrix.length;
+        double[] c = new double[n];
+        Arrays.fill(c, 1.0); // 初期ベクトルは全要素1（中立）
+        double[] next = new double[n];
+        boolean vcb = n > 1; // N<=1 では VCB 変換は恒等
+
+        // べき乗法： c ← normalize( E'^T * c )
+        for (int k = 0; k < MAX_ITERATIONS; k++) {
+            Arrays.fill(next, 0.0);
+            for (int i = 0; i < n; i++) {
+                float[] row = evaluationMatrix[i];
+                double ci = c[i];
+                if (!vcb) {
+                    for (int j = 0; j < n; j++) next[j] += ci * row[j];
+                    continue;
+                }
+                double share = ci * row[i] / (n - 1.0); // 予算の仮想配分
+                for (int j = 0; j < n; j++) {
+                    if (j != i) next[j] += ci * row[j] + share;
+                }
+            }
+
+            // L1 正規化（ベクトル和=1にする）
+            double sum = 0.0;
+            for (int i = 0; i < n; i++) sum += Math.abs(next[i]);
+            if (sum == 0.0) break;
+            for (int i = 0; i < n; i++) next[i] /= sum;
+
+            // 収束判定（L1差）
+            double diff = 0.0;
+            for (int i = 0; i < n; i++) diff += Math.abs(next[i] - c[i]);
+            double[] tmp = c; c = next; next = tmp;
+            if (diff < EPS) break;
+        }
+
+        // sum(c) = N にスケール（PICSY慣習）
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) sum += c[i];
+        double scale = (sum == 0.0) ? 1.0 : (n / sum);
+        for (int i = 0; i < n; i++) c[i] *= scale;
+
+        return c;
+    }
+
+    /**
+     * ブロック分解版。(I + B/(N-1) - A^T) c = 1 を blocks の分割で解き、sum(c)=N にスケールする。
+     * 左辺を M = M_D - C（M_D: ブロック内、C: ブロック間の取引）と分けて
+     *   1) 各ブロックを並列に解く: M_K x_K = 1 + (C x)_K
+     *      （小さいブロックは逆行列を一度だけ作って使い回し、大きいブロックはブロック内のべき乗法）
+     *   2) ブロックごとの倍率 s を集約方程式 Σ_L G_KL s_L = |K|（G = 行を K で、列を L で束ねた M diag(x)）で求めて x を補正
+     *   3) 1) に戻る（ブロック間の取引で変わった流入を反映）
+     * を繰り返す。ブロック間の取引は前計算で疎な一覧にしておき、2) 3) では n^2 の走査をしない。ブロック間に取引がなければ 1) の1回で厳密解。ブロック間の結合が弱いほど早く収束する。
+     * 分割はどの粒度でも解は同じ（速さだけが変わる）。
+     * ブロックが1つしかないとき、予算もブロック外への流出もないブロックがあるとき、
+     * 収束しないときは通常のべき乗法にフォールバックする。
+     */
+    public double[] calculate(double[][] evaluationMatrix, ContributionBlocks blocks) {
+        int n = evaluationMatrix.length;
+        if (blocks.size() != n) throw new IllegalArgumentException("blocks size mismatch");
+        if (n <= 1 || blocks.count() <= 1) return toArray(calculate(new SimpleMatrix(evaluationMatrix)));
+
+        double[] c = solveCoupled(evaluationMatrix, blocks);
+        if (c == null) return toArray(calculate(new SimpleMatrix(evaluationMatrix)));
+
+        // sum(c) = N にスケール（PICSY慣習）
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) sum += c[i];
+        double scale = (sum == 0.0) ? 1.0 : (n / sum);
+        for (int i = 0; i < n; i++) c[i] *= scale;
+        return c;
+    }
+
+    /** M x = 1 をブロック反復で解く。解けなければ null */
+    static double[] solveCoupled(double[][] E, ContributionBlocks blocks) {
+        int n = E.length, count = blocks.count();
+        Block[] parts = new Block[count];
+        boolean prepared = IntStream.range(0, count).parallel()
+            .allMatch(k -> (parts[k] = Block.prepare(E, blocks, k)) != null);
+        if (!prepared) return null;
+
+        double[] x = new double[n];
+        double[] r = new double[n];
+        Arrays.fill(r, 1.0);
+        if (!smooth(E, parts, r, x)) return null;
+        boolean coupled = false;
+        for (Block b : parts) coupled |= b.crossing;
+        if (!coupled) return x; // 独立なブロック：1回で厳密解
+
+        double[] prev = new double[n];
+        for (int k = 0; k < MAX_ITERATIONS; k++) {
+            coarseCorrect(blocks, parts, x);
+            crossInflow(parts, x, r);
+            System.arraycopy(x, 0, prev, 0, n);
+            if (!smooth(E, parts, r, x)) return null;
+
+            // 収束判定（相対 L1 差）
+            double diff = 0.0, norm = 0.0;
+            for (int i = 0; i < n; i++) {
+                diff += Math.abs(x[i] - prev[i]);
+                norm += x[i];
+            }
+            if (diff < EPS * norm) return x;
+        }
+        return null;
+    }
+
+    /** 全ブロックを並列に解く（x を上書き）。解けないブロックがあれば false */
+    private static boolean smooth(double[][] E, Block[] parts, double[] r, double[] x) {
+        return Arrays.stream(parts).parallel().allMatch(b -> b.solve(E, r, x));
+    }
+
+    /** r_i = 1 + Σ_{j はブロック外} E_ji x_j（ブロック間の取引による流入。前計算した疎な一覧だけをたどる） */
+    private static void crossInflow(Block[] parts, double[] x, double[] r) {
+        Arrays.fill(r, 1.0);
+        for (Block b : parts) {
+            for (int a = 0; a < b.idx.length; a++) {
+                int[] to = b.crossTo[a];
+                double[] w = b.crossWeight[a];
+                double xj = x[b.idx[a]];
+                for (int t = 0; t < to.length; t++) r[to[t]] += w[t] * xj;
+            }
+        }
+    }
+
+    /**
+     * 集約補正：ブロック K ごとの倍率 s_K を
+     *   Σ_L G_KL s_L = |K|,  G_KK = Σ_{j∈K} leak_j x_j,  G_KL = -W_KL = -Σ_{j∈L, i∈K} E_ji x_j
+     * で求め、x_K に掛ける（M x の行をブロックごとに足した値を 1 の和 |K| に合わせる）。
+     * W はブロック間の取引の一覧から列 L ごとの疎な形で作る。ブロック数が DIRECT_LIMIT までは直接解き、
+     * それより多いときは coarsePower で反復して解く。
+     * 集約方程式が解けない・正でない倍率が出るときは何もしない。
+     */
+    private static void coarseCorrect(ContributionBlocks blocks, Block[] parts, double[] x) {
+        int count = parts.length;
+        double[] diag = new double[count];
+        int[][] rows = new int[count][];
+        double[][] weights = new double[count][];
+        double[] acc = new double[count];
+        int[] mark = new int[count], touched = new int[count];
+        Arrays.fill(mark, -1);
+        for (int l = 0; l < count; l++) {
+            Block b = parts[l];
+            int t = 0;
+            for (int a = 0; a < b.idx.length; a++) {
+                double xj = x[b.idx[a]];
+                diag[l] += b.leak[a] * xj;
+                int[] to = b.crossTo[a];
+                double[] w = b.crossWeight[a];
+                for (int e = 0; e < to.length; e++) {
+                    int k = blocks.component(to[e]);
+                    if (mark[k] != l) { mark[k] = l; acc[k] = 0.0; touched[t++] = k; }
+                    acc[k] += w[e] * xj;
+                }
+            }
+            rows[l] = Arrays.copyOf(touched, t);
+            weights[l] = new double[t];
+            for (int q = 0; q < t; q++) weights[l][q] = acc[touched[q]];
+        }
+        double[] s = count <= DIRECT_LIMIT ? coarseDirect(diag, rows, weights, parts) : coarsePower(diag, rows, weights, parts);
+        if (s == null) return;
+        for (double v : s) if (!(v > 0) || !Double.isFinite(v)) return;
+        for (int k = 0; k < count; k++) {
+            for (int i : parts[k].idx) x[i] *= s[k];
+        }
+    }
+
+    /** 集約方程式を密な G で直接解く。解けなければ null */
+    private static double[] coarseDirect(double[] diag, int[][] rows, double[][] weights, Block[] parts) {
+        int count = diag.length;
+        double[][] g = new double[count][count];
+        SimpleMatrix sizes = new SimpleMatrix(count, 1);
+        for (int l = 0; l < count; l++) {
+            g[l][l] += diag[l];
+            for (int q = 0; q < rows[l].length; q++) g[rows[l][q]][l] -= weights[l][q];
+            sizes.set(l, 0, parts[l].idx.length);
+        }
+        try {
+            return toArray(new SimpleMatrix(g).solve(sizes));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ブロック数が多いときの集約方程式 (D - W) s = |K|（D = G の対角、W は列ごとの疎な形）。
+     * blockPower と同じく
+     *   F(s)_K = (τ(s) |K| + Σ_L W_KL s_L) / D_K,  τ(s) = Σ_L lk_L s_L / Σ_K |K|,  lk_L = D_L - Σ_K W_KL（G の列和）
+     * の不動点をべき乗法で求め、τ=1 となるようスケールする。1回あたり O(ブロック数 + ブロック間の組の数)。
+     * G の列和がすべて0（予算がない）で τ が決まらないときは null。
+     */
+    private static double[] coarsePower(double[] diag, int[][] rows, double[][] weights, Block[] parts) {
+        int count = diag.length;
+        double[] lk = new double[count];
+        double total = 0.0;
+        for (int l = 0; l < count; l++) {
+            double out = 0.0;
+            for (double w : weights[l]) out += w;
+            lk[l] = Math.max(0.0, diag[l] - out);
+            total += parts[l].idx.length;
+        }
+        double[] s = new double[count];
+        Arrays.fill(s, 1.0);
+        double[] next = new double[count];
+        for (int k = 0; k < MAX_ITERATIONS; k++) {
+            double t = tau(lk, s, total);
+            if (!(t > 0)) return null;
+            for (int l = 0; l < count; l++) next[l] = t * parts[l].idx.length;
+            for (int l = 0; l < count; l++) {
+                double sl = s[l];
+                int[] to = rows[l];
+                double[] w = weights[l];
+                for (int q = 0; q < to.length; q++) next[to[q]] += w[q] * sl;
+            }
+            // L1 正規化（和=ブロック数）して収束判定
+            double sum = 0.0;
+            for (int l = 0; l < count; l++) { next[l] /= diag[l]; sum += next[l]; }
+            if (!(sum > 0) || !Double.isFinite(sum)) return null;
+            double diff = 0.0;
+            for (int l = 0; l < count; l++) {
+                next[l] *= count / sum;
+                diff += Math.abs(next[l] - s[l]);
+            }
+            double[] tmp = s; s = next; next = tmp;
+            if (diff < EPS * count) break;
+        }
+        double t = tau(lk, s, total);
+        if (!(t > 0)) return null;
+        for (int l = 0; l < count; l++) s[l] /= t;
+        return s;
+    }
+
+    /**
+     * 1ブロック分の前計算。
+     * diag_a = 1 + b_a/(N-1)、leak_a = b_a N/(N-1) + （ブロック外への流出）= M_K の列和。
+     * ブロック外への取引 E_{idx a, i} は、メンバー a ごとに行き先 i と額の疎な一覧にしておく。
+     */
+    private static final class Block {
+        private static final int[] NO_TARGETS = new int[0];
+        private static final double[] NO_WEIGHTS = new double[0];
+
+        final int[] idx;
+        final double[] diag;
+        final double[] leak;
+        final double[][] inverse;     // M_K^{-1}（小さいブロックのみ、それ以外は null）
+        final int[][] crossTo;        // メンバー a からブロック外への取引の行き先 index
+        final double[][] crossWeight; // その額 E_{idx a, i}
+        final boolean crossing;       // ブロック外との取引があるか
+
+        private Block(int[] idx, double[] diag, double[] leak, double[][] inverse, int[][] crossTo, double[][] crossWeight, boolean crossing) {
+            this.idx = idx; this.diag = diag; this.leak = leak; this.inverse = inverse;
+            this.crossTo = crossTo; this.crossWeight = crossWeight; this.crossing = crossing;
+        }
+
+        /** 予算もブロック外への流出もない（M_K が特異）なら null */
+        static Block prepare(double[][] E, ContributionBlocks blocks, int k) {
+            int n = E.length;
+            int[] idx = blocks.members(k);
+            int m = idx.length;
+            double[] diag = new double[m], leak = new double[m];
+            int[][] crossTo = new int[m][];
+            double[][] crossWeight = new double[m][];
+            boolean hasLeak = false, crossing = false;
+            for (int a = 0; a < m; a++) {
+                double[] row = E[idx[a]];
+                double b = row[idx[a]];
+                double out = 0.0;
+                int c = 0;
+                for (int j = 0; j < n; j++) if (row[j] != 0.0 && blocks.component(j) != k) { out += row[j]; c++; }
+                crossTo[a] = c == 0 ? NO_TARGETS : new int[c];
+                crossWeight[a] = c == 0 ? NO_WEIGHTS : new double[c];
+                for (int j = 0, t = 0; t < c; j++) {
+                    if (row[j] != 0.0 && blocks.component(j) != k) { crossTo[a][t] = j; crossWeight[a][t++] = row[j]; }
+                }
+                diag[a] = 1.0 + b / (n - 1.0);
+                leak[a] = b * n / (n - 1.0) + out;
+                if (leak[a] > 0) hasLeak = true;
+                if (out > 0) crossing = true;
+            }
+            if (!hasLeak) return null; // 閉じたブロック：スケールが決まらない
+            if (m > DIRECT_LIMIT) return new Block(idx, diag, leak, null, crossTo, crossWeight, crossing);
+
+            // M_ab = δ_ab (1 + b_a/(N-1)) - E_{idx b, idx a}
+            SimpleMatrix M = new SimpleMatrix(m, m);
+            for (int a = 0; a < m; a++) {
+                double[] row = E[idx[a]];
+                M.set(a, a, diag[a]);
+                for (int b = 0; b < m; b++) if (b != a) M.set(b, a, -row[idx[b]]);
+            }
+            double[][] inverse = new double[m][m];
+            try {
+                SimpleMatrix inv = M.invert();
+                for (int a = 0; a < m; a++) {
+                    for (int b = 0; b < m; b++) inverse[a][b] = inv.get(a, b);
+                }
+            } catch (RuntimeException e) {
+                return null;
+            }
+            return new Block(idx, diag, leak, inverse, crossTo, crossWeight, crossing);
+        }
+
+        /** M_K x_K = r_K を解いて x に書き込む（大きいブロックは現在の x_K から反復を始める） */
+        boolean solve(double[][] E, double[] r, double[] x) {
+            int m = idx.length;
+            double[] rk = new double[m];
+            for (int a = 0; a < m; a++) rk[a] = r[idx[a]];
+            double[] y;
+            if (inverse != null) {
+                y = new double[m];
+                for (int a = 0; a < m; a++) {
+                    double[] inv = inverse[a];
+                    double v = 0.0;
+                    for (int b = 0; b < m; b++) v += inv[b] * rk[b];
+                    y[a] = v;
+                }
+            } else {
+                double[] start = new double[m];
+                boolean warm = true;
+                for (int a = 0; a < m; a++) {
+                    start[a] = x[idx[a]];
+                    if (!(start[a] > 0)) warm = false;
+                }
+                if (!warm) Arrays.fill(start, 1.0);
+                y = blockPower(E, this, rk, start);
+            }
+            for (int a = 0; a < m; a++) {
+                if (!Double.isFinite(y[a]) || y[a] < -1e-12) return false;
+                x[idx[a]] = Math.max(0.0, y[a]);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 大きいブロック用。M_K x = r の解 x は、線形写像
+     *   F(y)_a = (τ(y) r_a + Σ_{b≠a} E_{idx b, idx a} y_b) / diag_a,  τ(y) = Σ_a leak_a y_a / Σ_a r_a
+     * の不動点（τ(x)=1）になる。F は diag で重みづけた和を保つので、べき乗法で形を求め、
+     * 最後に τ=1 となるようスケールする。収束はブロック内の混ざりやすさで決まる（予算 b の大小に依らない）。
+     */
+    private static double[] blockPower(double[][] E, Block block, double[] r, double[] start) {
+        int[] idx = block.idx;
+        int m = idx.length;
+        double rsum = 0.0;
+        for (double v : r) rsum += v;
+        double[] x = start;
+        double[] next = new double[m];
+        for (int k = 0; k < MAX_ITERATIONS; k++) {
+            double t = tau(block.leak, x, rsum);
+            for (int a = 0; a < m; a++) next[a] = t * r[a];
+            for (int b = 0; b < m; b++) {
+                double[] row = E[idx[b]];
+                double xb = x[b];
+                for (int a = 0; a < m; a++) if (a != b) next[a] += row[idx[a]] * xb;
+            }
+            // L1 正規化（和=m）して収束判定
+            double sum = 0.0;
+            for (int a = 0; a < m; a++) { next[a] /= block.diag[a]; sum += next[a]; }
+            if (sum == 0.0) break;
+            double diff = 0.0;
+            for (int a = 0; a < m; a++) {
+                next[a] *= m / sum;
+                diff += Math.abs(next[a] - x[a]);
+            }
+            double[] tmp = x; x = next; next = tmp;
+            if (diff < EPS * m) break;
+        }
+        double t = tau(block.leak, x, rsum);
+        for (int a = 0; a < m; a++) x[a] /= t;
+        return x;
+    }
+
+    private static double tau(double[] leak, double[] y, double rsum) {
+        double s = 0.0;
+        for (int a = 0; a < y.length; a++) s += leak[a] * y[a];
+        return s / rsum;
+    }
+
+    private static double[] toArray(SimpleMatrix v) {
+        double[] out = new double[v.getNumRows()];
+        for (int i = 0; i < out.length; i++) out[i] = v.get(i, 0);
+        return out;
+    }
+
     /** VCB 変換: E' = E - B + (B*D)/(N-1) */
     private SimpleMatrix transformForVirtualCentralBank(SimpleMatrix E) {
         int n = E.getNumRows();
@@ -2,17 +2,25 @@ package com.example.picsy_engine.api;
 
 import com.example.picsy_engine.api.dto.*;
 import com.example.picsy_engine.service.ActionLogService;
+import com.example.picsy_engine.service.MatrixTransferService;
 import com.example.picsy_engine.service.SimulationService;
+import com.example.picsy_engine.transfer.MatrixFormat;
 import jakarta.validation.Valid;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 /**
  * REST API の入り口。
  *  - /api/state
  *  - /api/matrix (PUT)
+ *  - /api/matrix/import?format=csv|tsv|triplet|binary (PUT, ストリーミング取込)
+ *  - /api/matrix/export?format=csv|tsv|triplet|binary (GET, ストリーミング書出し)
  *  - /api/recovery (POST)
  *  - /api/transactions (POST)
  *  - /api/members (POST)
@@ -20,6 +28,7 @@ import java.util.List;
  *  - /api/companies (POST)
  *  - /api/companies/{companyId}/decompose (GET)
  *  - /api/logs (GET)
+ *  - /api/diagnostics/precision (GET, float32 と float64 の c の差)
  *
  * フロント(Vue)はこのAPI群だけ叩けば完成する。
  */
@@ -29,10 +38,11 @@ import java.util.List;
 public class CommunityController {
 
     private final SimulationService service;
+    private final MatrixTransferService transfers;
     private final ActionLogService logs;
 
-    public CommunityController(SimulationService service, ActionLogService logs){
-        this.service=service; this.logs=logs;
+    public CommunityController(SimulationService service, MatrixTransferService transfers, ActionLogService logs){
+        this.service=service; this.transfers=transfers; this.logs=logs;
     }
 
     @GetMapping("/state")
@@ -43,6 +53,19 @@ public class CommunityController {
         return service.updateMatrix(req);
     }
 
+    @PutMapping(path="/matrix/import", consumes=MediaType.ALL_VALUE)
+    public ImportResponse importMatrix(@RequestParam(defaultValue="csv") String format, InputStream body) throws IOException {
+        return transfers.importMatrix(body, MatrixFormat.of(format));
+    }
+
+    @GetMapping(path="/matrix/export", produces=MediaType.ALL_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMatrix(@RequestParam(defaultValue="csv") String format){
+        MatrixFormat fmt = MatrixFormat.of(format);
+        var source = transfers.snapshot();
+        StreamingResponseBody body = out -> transfers.export(source, fmt, out);
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(fmt.contentType())).body(body);
+    }
+
     @PostMapping("/recovery")
     public StateResponse recovery(@Valid @RequestBody RecoveryRequest req){
         return service.recover(req.gamma());
@@ -73,4 +96,7 @@ public class CommunityController {
 
     @GetMapping("/logs")
     public List<String> logs(){ return logs.list(); }
+
+    @GetMapping("/diagnostics/precision")
+    public PrecisionResponse precision(){ return service.precisionReport(); }
 }
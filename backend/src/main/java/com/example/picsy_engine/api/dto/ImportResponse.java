@@ -0,0 +1,8 @@
+package com.example.picsy_engine.api.dto;
+
+/** PUT /api/matrix/import の応答：取り込んだ件数（行列そのものは返さない） */
+public record ImportResponse(
+        String format,
+        int members,
+        long nonZeroEntries
+) {}
@@ -0,0 +1,10 @@
+package com.example.picsy_engine.api.dto;
+
+/** GET /api/diagnostics/precision : float32 経路と float64 経路の差（精度診断） */
+public record PrecisionResponse(
+        String storage,
+        int members,
+        double rowSumError,
+        double maxAbsDeviation,
+        double l1Deviation
+) {}
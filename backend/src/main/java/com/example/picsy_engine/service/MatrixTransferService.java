@@ -0,0 +1,51 @@
+package com.example.picsy_engine.service;
+
+import com.example.picsy_engine.api.dto.ImportResponse;
+import com.example.picsy_engine.state.StateStore;
+import com.example.picsy_engine.transfer.MatrixFormat;
+import com.example.picsy_engine.transfer.MatrixReader;
+import com.example.picsy_engine.transfer.MatrixSource;
+import com.example.picsy_engine.transfer.MatrixWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 評価行列＋メンバー名簿の一括取込/書出し（移行・バックアップ用）。
+ * - 取込: ストリームを1行ずつ読み、正規化しながらストアの新しい行列へ直接書き込み、最後に差し替え
+ * - 書出し: ストアのスナップショットを1行ずつ書き出す（行列のコピーを作らない）
+ * 取込のメンバー数は picsy.import.max-members まで（n×n の確保前に検査）。
+ */
+@Service
+public class MatrixTransferService {
+
+    private final StateStore store;
+    private final ActionLogService logs;
+    private final int maxMembers;
+
+    public MatrixTransferService(StateStore store, ActionLogService logs,
+                                 @Value("${picsy.import.max-members:10000}") int maxMembers){
+        if(maxMembers<=0) throw new IllegalArgumentException("picsy.import.max-members must be > 0");
+        this.store=store; this.logs=logs; this.maxMembers=maxMembers;
+    }
+
+    /** 取込（名簿ごと置き換え） */
+    public ImportResponse importMatrix(InputStream in, MatrixFormat format) throws IOException {
+        StateStore.Importer importer = store.newImporter();
+        int n = MatrixReader.read(in, format, maxMembers, importer);
+        importer.commit();
+        logs.log("IMPORT","format="+format.name().toLowerCase()+" n="+n);
+        return new ImportResponse(format.name().toLowerCase(), n, importer.nonZeroEntries());
+    }
+
+    /** 書出し対象のスナップショット（ストリーミング開始前に取得しておく） */
+    public MatrixSource snapshot(){ return store.snapshot(); }
+
+    /** スナップショットを指定形式で書き出す */
+    public void export(MatrixSource source, MatrixFormat format, OutputStream out) throws IOException {
+        MatrixWriter.write(source, format, out);
+    }
+}
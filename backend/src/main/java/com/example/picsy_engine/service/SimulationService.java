@@ -7,6 +7,7 @@ import com.example.picsy_engine.state.StateStore;
 import com.example.picsy_engine.util.MatrixUtils;
 import com.example.picsy_engine.ContributionCalculator;
 import org.ejml.simple.SimpleMatrix;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -23,6 +24,10 @@ import java.util.Optional;
  * - ゴースト化（死）
  * - 会社設立（投資・予算・配分）
  * - 仮想解体（人だけの行列 ˆE）
+ *
+ * picsy.contribution.solver=blocks のとき、c は取引グラフのブロックごとの並列ソルバで求める
+ * （ブロックは行ごとの均等配分の picsy.contribution.coupling-threshold 倍以上の取引でつながる成分、弱い取引はソルバが反復で解く）。
+ * 各操作は行列の接続がどう変わったかをストアに伝え、成分の全再計算を避ける。
  */
 @Service
 public class SimulationService {
@@ -30,26 +35,30 @@ public class SimulationService {
     private final StateStore store;
     private final ContributionCalculator calculator = new ContributionCalculator();
     private final ActionLogService logs;
+    private final boolean blockSolve;
 
-    public SimulationService(StateStore store, ActionLogService logs){
+    public SimulationService(StateStore store, ActionLogService logs,
+                             @Value("${picsy.contribution.solver:power}") String solver){
         this.store=store; this.logs=logs;
+        if("blocks".equalsIgnoreCase(solver)) blockSolve=true;
+        else if("power".equalsIgnoreCase(solver)) blockSolve=false;
+        else throw new IllegalArgumentException("unknown picsy.contribution.solver="+solver);
     }
 
     /** 現在状態を返す（matrix, c, purchasingPower） */
     public StateResponse getState(){
         var members = store.listMembers();
-        var matrix = store.matrixCopy();
 
-        // c を反復法で算出
-        var cMat = calculator.calculate(new SimpleMatrix(matrix));
-        double[] contributions = new double[members.size()];
-        for(int i=0;i<contributions.length;i++) contributions[i]=cMat.get(i,0);
+        // c を反復法（またはブロック分解）で算出
+        Solved cur = solveCurrent();
+        double[] contributions = cur.contributions();
 
         // 購買力 = E_ii * c_i
         double[] power = new double[members.size()];
-        for(int i=0;i<power.length;i++) power[i]= matrix[i][i]*contributions[i];
+        for(int i=0;i<power.length;i++) power[i]= cur.get(i,i)*contributions[i];
 
-        return new StateResponse(toViews(members), matrix, contributions, power);
+        // double への拡張は JSON 応答のためだけに行う
+        return new StateResponse(toViews(members), cur.widened(), contributions, power);
     }
 
     /** 行列の置換（行正規化して保存） */
@@ -61,8 +70,46 @@ public class SimulationService {
         return getState();
     }
 
+    /**
+     * 精度診断：現在の行列について float32 経路と float64 経路の c を比較する。
+     * - rowSumError: 保存された float 行列の行和の 1 からのずれ（取引・回収で丸めを繰り返した蓄積）
+     * - c のずれ: float 行列 + float 版ソルバ と、float64 参照行列 + EJML の差
+     * float32 モードの参照行列は float 行列を double に拡張して行和=1に正規化し直したもの、
+     * float64 モードでは実際の行列（float32 に切り替えた場合の誤差の見積もり）。
+     * 2回解くので重い。明示的に呼ばれたときだけ計算する。読み取り専用なので操作ログには残さない。
+     */
+    public PrecisionResponse precisionReport(){
+        float[][] Ef = store.matrixCopyFloat();
+        int n = Ef.length;
+
+        double rowSumError = 0.0;
+        for(float[] row:Ef){
+            double sum = 0.0;
+            for(float v:row) sum += v;
+            rowSumError = Math.max(rowSumError, Math.abs(sum - 1.0));
+        }
+
+        double[][] reference;
+        if(store.isSinglePrecision()){
+            reference = MatrixUtils.toDouble(Ef);
+            MatrixUtils.normalizeRowsInPlace(reference);
+        }else{
+            reference = store.matrixCopy();
+        }
+        double[] c64 = toArray(calculator.calculate(new SimpleMatrix(reference)));
+        double[] c32 = calculator.calculate(Ef);
+
+        double l1 = 0.0;
+        for(int i=0;i<n;i++) l1 += Math.abs(c32[i]-c64[i]);
+        double max = MatrixUtils.maxAbsDiff(c32, c64);
+
+        String storage = store.isSinglePrecision() ? "float32" : "float64";
+        return new PrecisionResponse(storage, n, rowSumError, max, l1);
+    }
+
     /** 自然回収（ゴースト行は対象外） */
     public StateResponse recover(double gamma){
+        if(store.isSinglePrecision()) return recoverFloat(gamma);
         double[][] E = store.matrixCopy();
         int n = E.length;
         for(int i=0;i<n;i++){
@@ -72,7 +119,25 @@ public class SimulationService {
             E[i][i] = eii + gamma*(1.0 - eii);
         }
         MatrixUtils.normalizeRowsInPlace(E);
-        store.replaceMatrix(E);
+        if(gamma<1.0) store.replaceMatrixKeepingBlocks(E); // γ=1 なら非対角が消えうる
+        else store.replaceMatrix(E);
+        logs.log("RECOVERY","gamma="+gamma);
+        return getState();
+    }
+
+    /** 自然回収の float32 版（行列は float のまま、計算は double） */
+    private StateResponse recoverFloat(double gamma){
+        float[][] E = store.matrixCopyFloat();
+        int n = E.length;
+        for(int i=0;i<n;i++){
+            if(store.isGhostRow(i)) continue; // ゴーストは停止
+            double eii = E[i][i];
+            for(int j=0;j<n;j++) if(j!=i) E[i][j] = (float)(E[i][j] * (1.0 - gamma));
+            E[i][i] = (float)(eii + gamma*(1.0 - eii));
+        }
+        MatrixUtils.normalizeRowsInPlace(E);
+        if(gamma<1.0) store.replaceMatrixKeepingBlocks(E);
+        else store.replaceMatrix(E);
         logs.log("RECOVERY","gamma="+gamma);
         return getState();
     }
@@ -83,19 +148,28 @@ public class SimulationService {
         int s = indexOrThrow(req.sellerId());
         if(b==s) throw new IllegalArgumentException("buyer==seller");
 
-        double[][] E = store.matrixCopy();
-        double c_b = calculator.calculate(new SimpleMatrix(E)).get(b,0);
+        Solved cur = solveCurrent();
+        double c_b = cur.contributions()[b];
         if(c_b<=0) throw new IllegalArgumentException("buyer contribution is zero");
         double alpha = req.price() / c_b;
 
         if(alpha < 0) throw new IllegalArgumentException("alpha < 0");
-        if(alpha > E[b][b]+1e-12) throw new IllegalArgumentException("insufficient budget");
-
-        E[b][b]-=alpha;
-        E[b][s]+=alpha;
-
-        MatrixUtils.normalizeRowsInPlace(E);
-        store.replaceMatrix(E);
+        if(alpha > cur.get(b,b)+1e-12) throw new IllegalArgumentException("insufficient budget");
+
+        if(cur.matrixFloat()!=null){
+            // float32：float のまま更新（計算は double）
+            float[][] E = cur.matrixFloat();
+            E[b][b] = (float)(E[b][b] - alpha);
+            E[b][s] = (float)(E[b][s] + alpha);
+            MatrixUtils.normalizeRowsInPlace(E);
+            store.replaceMatrixLinking(E, b, s);
+        }else{
+            double[][] E = cur.matrix();
+            E[b][b]-=alpha;
+            E[b][s]+=alpha;
+            MatrixUtils.normalizeRowsInPlace(E);
+            store.replaceMatrixLinking(E, b, s);
+        }
         logs.log("TRANSACTION", "buyer="+req.buyerId()+", seller="+req.sellerId()+", delta="+req.price()+", alpha="+alpha);
         return getState();
     }
@@ -105,20 +179,18 @@ public class SimulationService {
         String name = req.name().trim();
         if(name.isEmpty()) throw new IllegalArgumentException("name empty");
 
-        int n = store.size();
-        double[][] E = store.matrixCopy();
-        var cMat = calculator.calculate(new SimpleMatrix(E));
-        double[] c = new double[n];
-        for(int i=0;i<n;i++) c[i]=cMat.get(i,0);
+        Solved cur = solveCurrent();
+        int n = cur.size();
+        double[] c = cur.contributions();
 
         double[][] Ex = new double[n+1][n+1];
 
         // 既存行のオフ対角は (N-1)/N 倍、新列は (1-E_ii)/N、対角はそのまま
         for(int i=0;i<n;i++){
-            double eii = E[i][i];
+            double eii = cur.get(i,i);
             for(int j=0;j<n;j++){
                 if(j==i) Ex[i][i]=eii;
-                else Ex[i][j]=E[i][j]*((double)(n-1)/n);
+                else Ex[i][j]=cur.get(i,j)*((double)(n-1)/n);
             }
             Ex[i][n]=(1.0 - eii)/n;
         }
@@ -129,7 +201,7 @@ public class SimulationService {
         MatrixUtils.normalizeRowsInPlace(Ex);
 
         int newId = store.allocateId(name,false);
-        store.attachNewIndexForId(newId, Ex);
+        store.attachNewIndexForId(newId, Ex, true); // 既存オフ対角は (N-1)/N 倍なので消えない
         logs.log("MEMBER_ADD","id="+newId+" name="+name);
         return getState();
     }
@@ -143,15 +215,13 @@ public class SimulationService {
 
     /** 会社設立（投資・予算・配分） */
     public StateResponse createCompany(CompanyCreateRequest req){
-        int n=store.size();
-        double[][] E = store.matrixCopy();
+        double[][] Ex = store.matrixCopyExpanded();
+        int n = Ex.length-1;
 
         int companyId = store.allocateId(req.name(), true);
 
-        double[][] Ex = new double[n+1][n+1];
-        for(int i=0;i<n;i++) System.arraycopy(E[i],0,Ex[i],0,n);
-
         // founders: invest を X 列に立て、既存オフ対角を比例縮小
+        boolean linksPreserved = true; // 全額出資なら創業者の既存オフ対角が0になり、接続が切れうる
         for(var f: req.founders()){
             int i = indexOrThrow(f.memberId());
             double invest = f.invest();
@@ -161,6 +231,7 @@ public class SimulationService {
 
             double scale = (residual - invest)/residual;
             for(int j=0;j<n;j++) if(j!=i) Ex[i][j]*=scale;
+            if(!(scale>0)) linksPreserved=false;
             Ex[i][n]=invest;
         }
 
@@ -175,7 +246,7 @@ public class SimulationService {
         }
 
         MatrixUtils.normalizeRowsInPlace(Ex);
-        store.attachNewIndexForId(companyId, Ex);
+        store.attachNewIndexForId(companyId, Ex, linksPreserved);
         logs.log("COMPANY_CREATE","id="+companyId+" name="+req.name()+" budget="+req.budget());
         return getState();
     }
@@ -211,6 +282,39 @@ public class SimulationService {
 
     // ===== helpers =====
 
+    /** 同じ時点の行列（double か float のどちらか一方）と貢献度 */
+    private record Solved(double[][] matrix, float[][] matrixFloat, double[] contributions) {
+        int size(){ return contributions.length; }
+        double get(int i, int j){ return matrix!=null ? matrix[i][j] : matrixFloat[i][j]; }
+        /** 応答用の double 行列（float のときだけ拡張コピーを作る） */
+        double[][] widened(){ return matrix!=null ? matrix : MatrixUtils.toDouble(matrixFloat); }
+    }
+
+    /**
+     * 現在の行列と c を求める。
+     * - ブロック分解モード: ストアの連結成分を使う（ソルバが double 行列を読むため float32 でも double で受け取る）
+     * - float32 モード: float のコピーをそのまま float 版ソルバへ
+     * - それ以外: double のコピーを EJML のべき乗法へ
+     */
+    private Solved solveCurrent(){
+        if(blockSolve){
+            var st = store.matrixState();
+            return new Solved(st.matrix(), null, calculator.calculate(st.matrix(), st.blocks()));
+        }
+        if(store.isSinglePrecision()){
+            float[][] Ef = store.matrixCopyFloat();
+            return new Solved(null, Ef, calculator.calculate(Ef));
+        }
+        double[][] E = store.matrixCopy();
+        return new Solved(E, null, toArray(calculator.calculate(new SimpleMatrix(E))));
+    }
+
+    private static double[] toArray(SimpleMatrix v){
+        double[] out = new double[v.getNumRows()];
+        for(int i=0;i<out.length;i++) out[i]=v.get(i,0);
+        return out;
+    }
+
     private int indexOrThrow(int memberId){
         Optional<Integer> oi = store.indexOfId(memberId);
         if(oi.isEmpty()) throw new IllegalArgumentException("unknown memberId="+memberId);
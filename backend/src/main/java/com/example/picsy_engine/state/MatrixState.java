@@ -0,0 +1,6 @@
+package com.example.picsy_engine.state;
+
+import com.example.picsy_engine.ContributionBlocks;
+
+/** 同じ時点で取った行列のコピーとそのブロック構造（ブロック分解ソルバ用） */
+public record MatrixState(double[][] matrix, ContributionBlocks blocks) {}
@@ -1,8 +1,14 @@
 package com.example.picsy_engine.state;
 
+import com.example.picsy_engine.ContributionBlocks;
 import com.example.picsy_engine.domain.Member;
 import com.example.picsy_engine.domain.MemberStatus;
 import com.example.picsy_engine.domain.MemberType;
+import com.example.picsy_engine.transfer.MatrixSink;
+import com.example.picsy_engine.transfer.MatrixSource;
+import com.example.picsy_engine.util.MatrixUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -15,17 +21,42 @@ import java.util.concurrent.atomic.AtomicInteger;
  * - ID ↔ 行列index の写像
  *
  * DB不要のモノリス初期段階ではこれで十分。将来は差し替え可能。
+ *
+ * picsy.matrix.storage=float32 のとき E は float[][] で保持する（メモリ半減）。
+ * 外向きの matrixCopy()/replaceMatrix(double[][]) は従来どおり double で、境界で変換する。
+ *
+ * 保持している行列配列はその場で書き換えず、更新は常に新しい配列への差し替えで行う。
+ * そのため snapshot() はコピーせずに参照だけを渡せる（一括書出し用）。
+ *
+ * ブロック分解ソルバ用に E の連結成分（ContributionBlocks、行ごとの均等配分の picsy.contribution.coupling-threshold 倍以上の取引でつなぐ）も持つ。
+ * 取引・回収・メンバー追加では接続の変化だけを反映し、全走査は行列の丸ごと置換後に必要になったときだけ行う。
+ * 差分更新は結合のみ（しきい値を下回った取引で成分を分けることはしない）。分割が粗くなっても解は変わらない。
  */
 @Component
 public class StateStore {
 
-    private double[][] E; // 評価行列（row-sum=1）
+    private double[][] E;  // 評価行列（row-sum=1）: float64 モード
+    private float[][] Ef;  // 評価行列（row-sum=1）: float32 モード
+    private final boolean singlePrecision;
+    private ContributionBlocks blocks; // E の連結成分（null = 未計算）
+    private final double couplingThreshold; // 成分をつなぐ取引の下限（行の均等配分に対する倍率。0 なら非ゼロすべて）
     private final Map<Integer, Member> members = new LinkedHashMap<>();
     private final Map<Integer, Integer> idToIndex = new LinkedHashMap<>();
     private final List<Integer> indexToId = new ArrayList<>();
     private final AtomicInteger idSeq = new AtomicInteger(1);
 
-    public StateStore(){
+    /** 結合しきい値0（非ゼロの取引すべてで成分をつなぐ） */
+    public StateStore(String storage){ this(storage, 0.0); }
+
+    @Autowired
+    public StateStore(@Value("${picsy.matrix.storage:float64}") String storage,
+                      @Value("${picsy.contribution.coupling-threshold:0.5}") double couplingThreshold){
+        if("float32".equalsIgnoreCase(storage)) singlePrecision=true;
+        else if("float64".equalsIgnoreCase(storage)) singlePrecision=false;
+        else throw new IllegalArgumentException("unknown picsy.matrix.storage="+storage);
+        if(!(couplingThreshold>=0 && Double.isFinite(couplingThreshold))) throw new IllegalArgumentException("picsy.contribution.coupling-threshold must be a non-negative number");
+        this.couplingThreshold=couplingThreshold;
+
         // 初期3人 A,B,C
         int a=idSeq.getAndIncrement(), b=idSeq.getAndIncrement(), c=idSeq.getAndIncrement();
         members.put(a,new Member(a,"A", MemberType.PERSON));
@@ -35,13 +66,16 @@ public class StateStore {
         idToIndex.put(a,0); idToIndex.put(b,1); idToIndex.put(c,2);
 
         // 行和=1の初期行列
-        E = new double[][]{
+        setMatrix(new double[][]{
             {0.40,0.30,0.30},
             {0.20,0.30,0.50},
             {0.25,0.45,0.30}
-        };
+        });
     }
 
+    /** float32 保存モードか */
+    public boolean isSinglePrecision(){ return singlePrecision; }
+
     public synchronized int size(){ return indexToId.size(); }
 
     public synchronized List<Member> listMembers(){
@@ -51,14 +85,73 @@ public class StateStore {
     }
 
     public synchronized double[][] matrixCopy(){
+        if(singlePrecision) return MatrixUtils.toDouble(Ef);
         int n=E.length; double[][] m=new double[n][n];
         for(int i=0;i<n;i++) System.arraycopy(E[i],0,m[i],0,n);
         return m;
     }
 
+    /** float のままのコピー（float32 モードの計算経路用。float64 モードでは丸めて返す） */
+    public synchronized float[][] matrixCopyFloat(){
+        return singlePrecision ? MatrixUtils.copy(Ef) : MatrixUtils.toFloat(E);
+    }
+
+    /** (N+1)×(N+1) の double 行列に現在の E を左上へ写したもの（メンバー追加・会社設立の下書き用） */
+    public synchronized double[][] matrixCopyExpanded(){
+        int n = indexToId.size();
+        double[][] m = new double[n+1][n+1];
+        for(int i=0;i<n;i++){
+            if(singlePrecision){
+                float[] r = Ef[i];
+                for(int j=0;j<n;j++) m[i][j]=r[j];
+            }else{
+                System.arraycopy(E[i],0,m[i],0,n);
+            }
+        }
+        return m;
+    }
+
+    /** 行列と連結成分を同時に取得（成分が未計算ならここで全走査） */
+    public synchronized MatrixState matrixState(){
+        if(blocks==null) blocks = singlePrecision ? ContributionBlocks.of(Ef, couplingThreshold) : ContributionBlocks.of(E, couplingThreshold);
+        return new MatrixState(matrixCopy(), blocks);
+    }
+
+    /** 行列を丸ごと置換（非ゼロ構造は不明として連結成分を捨てる） */
     public synchronized void replaceMatrix(double[][] newE){
         if(newE.length!=indexToId.size()) throw new IllegalArgumentException("matrix size mismatch");
-        this.E = newE;
+        setMatrix(newE);
+        blocks = null;
+    }
+
+    public synchronized void replaceMatrix(float[][] newE){
+        if(newE.length!=indexToId.size()) throw new IllegalArgumentException("matrix size mismatch");
+        setMatrix(newE);
+        blocks = null;
+    }
+
+    /** 非対角の非ゼロ構造が変わらない置換（γ<1 の自然回収など） */
+    public synchronized void replaceMatrixKeepingBlocks(double[][] newE){
+        if(newE.length!=indexToId.size()) throw new IllegalArgumentException("matrix size mismatch");
+        setMatrix(newE);
+    }
+
+    public synchronized void replaceMatrixKeepingBlocks(float[][] newE){
+        if(newE.length!=indexToId.size()) throw new IllegalArgumentException("matrix size mismatch");
+        setMatrix(newE);
+    }
+
+    /** 非ゼロ構造に i→j が加わるだけの置換（取引）。E_ij が行 i の下限以上なら成分をつなぐ */
+    public synchronized void replaceMatrixLinking(double[][] newE, int i, int j){
+        if(newE.length!=indexToId.size()) throw new IllegalArgumentException("matrix size mismatch");
+        setMatrix(newE);
+        if(blocks!=null && ContributionBlocks.couples(newE[i][j], ContributionBlocks.cutoff(couplingThreshold, newE[i][i], newE.length))) blocks = blocks.linked(i, j);
+    }
+
+    public synchronized void replaceMatrixLinking(float[][] newE, int i, int j){
+        if(newE.length!=indexToId.size()) throw new IllegalArgumentException("matrix size mismatch");
+        setMatrix(newE);
+        if(blocks!=null && ContributionBlocks.couples(newE[i][j], ContributionBlocks.cutoff(couplingThreshold, newE[i][i], newE.length))) blocks = blocks.linked(i, j);
     }
 
     public synchronized Optional<Integer> indexOfId(int id){
@@ -74,10 +167,14 @@ public class StateStore {
         return id;
     }
 
-    /** 行列を N→N+1 に拡張した後、新IDに index を紐付ける */
-    public synchronized void attachNewIndexForId(int newId, double[][] expandedE){
+    /**
+     * 行列を N→N+1 に拡張した後、新IDに index を紐付ける。
+     * linksPreserved=true なら既存メンバー間の非ゼロが消えていないとみなし、新メンバーの行/列だけで連結成分を更新する。
+     */
+    public synchronized void attachNewIndexForId(int newId, double[][] expandedE, boolean linksPreserved){
         int newIndex = expandedE.length-1;
-        this.E = expandedE;
+        blocks = (blocks!=null && linksPreserved) ? blocks.grown(expandedE, couplingThreshold) : null;
+        setMatrix(expandedE);
         idToIndex.put(newId,newIndex);
         indexToId.add(newId);
     }
@@ -91,4 +188,103 @@ public class StateStore {
         int id = indexToId.get(rowIndex);
         return members.get(id).getStatus()==MemberStatus.GHOST;
     }
+
+    /** 一括書出し用の読み取り専用ビュー（行列はコピーしない） */
+    public synchronized MatrixSource snapshot(){
+        final double[][] e = E;
+        final float[][] ef = Ef;
+        final List<Member> roster = listMembers();
+        return new MatrixSource() {
+            @Override public int size(){ return roster.size(); }
+            @Override public Member member(int index){ return roster.get(index); }
+            @Override public void row(int index, double[] dst){
+                if(singlePrecision){
+                    float[] r = ef[index];
+                    for(int j=0;j<r.length;j++) dst[j]=r[j];
+                }else{
+                    System.arraycopy(e[index],0,dst,0,e[index].length);
+                }
+            }
+            @Override public boolean singlePrecision(){ return singlePrecision; }
+        };
+    }
+
+    /** 一括取込の受け口を作る。行は保存モードの精度で直接新しい配列へ書き込み、commit() で差し替える */
+    public Importer newImporter(){ return new Importer(); }
+
+    /**
+     * ストリーミング取込用の MatrixSink。
+     * 取込中は既存の状態に触れないので、途中でエラーになっても現在の状態はそのまま残る。
+     */
+    public final class Importer implements MatrixSink {
+        private double[][] rows64;
+        private float[][] rows32;
+        private Member[] roster;
+        private int rowsFilled;
+        private long nonZero;
+
+        @Override public void begin(int n){
+            if(singlePrecision) rows32 = new float[n][];
+            else rows64 = new double[n][];
+            roster = new Member[n];
+        }
+
+        @Override public void member(int index, int id, String name, MemberType type, MemberStatus status){
+            Member m = new Member(id, name, type);
+            m.setStatus(status);
+            roster[index] = m;
+        }
+
+        @Override public void row(int index, double[] values){
+            if(singlePrecision){
+                float[] r = new float[values.length];
+                for(int j=0;j<r.length;j++) r[j]=(float) values[j];
+                rows32[index] = r;
+            }else{
+                rows64[index] = values.clone();
+            }
+            for(double v:values) if(v!=0.0) nonZero++;
+            rowsFilled++;
+        }
+
+        /** 非ゼロ要素数（取込結果の報告用） */
+        public long nonZeroEntries(){ return nonZero; }
+
+        /** 取り込んだ内容で状態を丸ごと置き換える（ID は保持し、採番は最大ID+1から続ける） */
+        public void commit(){
+            if(roster==null) throw new IllegalStateException("nothing imported");
+            int n = roster.length;
+            if(rowsFilled!=n) throw new IllegalArgumentException("expected "+n+" rows, got "+rowsFilled);
+            Map<Integer,Integer> index = new LinkedHashMap<>();
+            int maxId = 0;
+            for(int i=0;i<n;i++){
+                if(roster[i]==null) throw new IllegalArgumentException("member "+i+" missing");
+                if(index.put(roster[i].getId(), i)!=null) throw new IllegalArgumentException("duplicate member id="+roster[i].getId());
+                maxId = Math.max(maxId, roster[i].getId());
+            }
+            synchronized(StateStore.this){
+                members.clear(); idToIndex.clear(); indexToId.clear();
+                for(int i=0;i<n;i++){
+                    members.put(roster[i].getId(), roster[i]);
+                    indexToId.add(roster[i].getId());
+                }
+                idToIndex.putAll(index);
+                idSeq.set(maxId+1);
+                if(singlePrecision) Ef = rows32;
+                else E = rows64;
+                blocks = null;
+            }
+        }
+    }
+
+    /** 保存モードに応じて E を格納（float32 モードでは丸める） */
+    private void setMatrix(double[][] m){
+        if(singlePrecision) this.Ef = MatrixUtils.toFloat(m);
+        else this.E = m;
+    }
+
+    private void setMatrix(float[][] m){
+        if(singlePrecision) this.Ef = m;
+        else this.E = MatrixUtils.toDouble(m);
+    }
 }
@@ -0,0 +1,581 @@
+package com.example.picsy_engine.tools;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * REST API（CommunityController）向けの負荷生成・ソークテストツール。
+ * ローカルで起動したアプリに対し、状態取得・取引・回収・メンバー追加・会社設立・仮想解体を
+ * 指定した比率とレートで送り、結果を JSON で出力する（実行ごとに比較できる形式）。
+ *
+ * 実行例:
+ *   mvn -Ploadtest spring-boot:run      （別端末。actuator と loadtest 設定を有効にして起動）
+ *   mvn -Ploadgen exec:java -Dexec.args="--rate=200 --duration=60 --seed=42 --out=run.json"
+ *
+ * オプション:
+ *   --base=http://localhost:8080   接続先
+ *   --rate=50                      目標レート（req/s）
+ *   --duration=30                  実行秒数（--replay 時は無視）
+ *   --seed=1                       操作列・パラメータを決める乱数種
+ *   --mix=state=60,transaction=20,recovery=5,member=5,company=5,decompose=5
+ *                                  （ghost も指定可。対象は名簿から選ぶ）
+ *   --replay=actions.json          GET /api/logs の応答（JSON 配列）または1行1件のログを時系列順に再生（レートは --rate）
+ *   --out=run.json                 出力先（省略時は標準出力）
+ *
+ * - 操作列は seed から送信時に逐次生成する（同じ seed なら同じ操作・同じパラメータ。
+ *   長時間のソークでも操作列を溜めない）
+ * - 1リクエスト=1仮想スレッドの開ループ送信。レイテンシは「予定送信時刻」から計測する
+ *   （サーバが詰まっても送信が遅れて遅延が過小評価されないように）
+ * - レイテンシは固定サイズの対数線形ヒストグラムに集計する（相対誤差 1/32 以内、メモリ一定）
+ * - "insufficient budget" による取引拒否はエラーとは別に数える
+ *   （エラー本文にメッセージが載る loadtest プロファイルで起動したときのみ判別できる）
+ * - 応答は members だけをストリームで読み、n×n の matrix は読み捨てる（大きな n でも送信側を詰まらせない）
+ * - サーバ側の割当量/GC は /actuator/metrics の前後差分で取得（loadtest プロファイル以外では null）
+ */
+public final class LoadGenerator {
+
+    /** 操作の種類（mix のキー名） */
+    enum Kind {
+        STATE("state"), TRANSACTION("transaction"), RECOVERY("recovery"),
+        MEMBER("member"), COMPANY("company"), DECOMPOSE("decompose"), GHOST("ghost");
+
+        final String key;
+        Kind(String key){ this.key=key; }
+
+        static Kind of(String key){
+            for(Kind k:values()) if(k.key.equalsIgnoreCase(key)) return k;
+            throw new IllegalArgumentException("unknown op kind: "+key);
+        }
+    }
+
+    /**
+     * 1件の操作。picks は実行時の名簿から ID を選ぶための乱数、
+     * ids はリプレイ時の明示 ID（null なら picks を使う）。
+     */
+    record Op(Kind kind, int[] picks, int[] ids, double value, String name) {}
+
+    /** 直近に観測したメンバー名簿（応答の members から更新） */
+    record Roster(List<Integer> all, List<Integer> companies) {}
+
+    private static final String BUDGET_REJECTION = "insufficient budget";
+    private static final Pattern LOG_LINE = Pattern.compile("^\\[([^\\]]+)\\] \\[([A-Z_]+)\\] (.*)$");
+    private static final Pattern KV_KEY = Pattern.compile("(?:^|,?\\s+|,)([A-Za-z]+)=");
+
+    private final Map<String,String> opts;
+    private final URI base;
+    private final HttpClient http;
+    private final ObjectMapper json = new ObjectMapper();
+    private final Map<Kind, Recorder> recorders = new EnumMap<>(Kind.class);
+    private final AtomicInteger nameSeq = new AtomicInteger();
+    private volatile Roster roster = new Roster(List.of(), List.of());
+
+    private LoadGenerator(Map<String,String> opts){
+        this.opts=opts;
+        this.base=URI.create(opts.getOrDefault("base","http://localhost:8080"));
+        this.http=HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        for(Kind k:Kind.values()) recorders.put(k, new Recorder());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String,String> opts = new LinkedHashMap<>();
+        for(String a:args){
+            if(!a.startsWith("--") || !a.contains("=")) throw new IllegalArgumentException("expected --key=value: "+a);
+            int eq=a.indexOf('=');
+            opts.put(a.substring(2,eq), a.substring(eq+1));
+        }
+        new LoadGenerator(opts).run();
+    }
+
+    private void run() throws Exception {
+        double rate = Double.parseDouble(opts.getOrDefault("rate","50"));
+        if(rate<=0) throw new IllegalArgumentException("rate must be > 0");
+        long seed = Long.parseLong(opts.getOrDefault("seed","1"));
+        Random rnd = new Random(seed);
+
+        Iterator<Op> ops;
+        long planned;
+        if(opts.containsKey("replay")){
+            List<Op> replay = replayOps(replayEntries(Files.readString(Path.of(opts.get("replay")), StandardCharsets.UTF_8), json), rnd);
+            ops = replay.iterator();
+            planned = replay.size();
+        }else{
+            planned = Math.round(rate*Double.parseDouble(opts.getOrDefault("duration","30")));
+            ops = mixOps(parseMix(opts.getOrDefault("mix","state=60,transaction=20,recovery=5,member=5,company=5,decompose=5")),
+                         planned, rnd);
+        }
+
+        refreshRoster();
+        Map<String,Double> serverBefore = serverMetrics();
+
+        // 開ループ：予定時刻ごとに仮想スレッドへ投入
+        long interval = (long)(1_000_000_000L/rate);
+        long start = System.nanoTime();
+        try(ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()){
+            for(long i=0; ops.hasNext(); i++){
+                long due = start + i*interval;
+                long wait = due - System.nanoTime();
+                if(wait>0) LockSupport.parkNanos(wait);
+                Op op = ops.next();
+                exec.submit(() -> execute(op, due));
+            }
+        } // close() で全リクエストの完了を待つ
+        double elapsedSec = (System.nanoTime()-start)/1e9;
+
+        Map<String,Double> serverAfter = serverMetrics();
+        report(rate, seed, planned, elapsedSec, serverBefore, serverAfter);
+    }
+
+    // ===== 操作列の生成 =====
+
+    static Map<Kind,Integer> parseMix(String spec){
+        Map<Kind,Integer> mix = new EnumMap<>(Kind.class);
+        for(String part:spec.split(",")){
+            String[] kv = part.trim().split("=");
+            if(kv.length!=2) throw new IllegalArgumentException("bad mix entry: "+part);
+            int w = Integer.parseInt(kv[1].trim());
+            if(w<0) throw new IllegalArgumentException("negative weight: "+part);
+            mix.put(Kind.of(kv[0].trim()), w);
+        }
+        if(mix.values().stream().mapToInt(Integer::intValue).sum()<=0) throw new IllegalArgumentException("mix sum <= 0");
+        return mix;
+    }
+
+    /** mix の比率で count 件の操作を next() のたびに生成する（rnd は呼び出し順に消費） */
+    static Iterator<Op> mixOps(Map<Kind,Integer> mix, long count, Random rnd){
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        return new Iterator<>(){
+            long produced;
+            @Override public boolean hasNext(){ return produced<count; }
+            @Override public Op next(){
+                if(!hasNext()) throw new NoSuchElementException();
+                produced++;
+                int r = rnd.nextInt(total);
+                Kind kind = null;
+                for(var e:mix.entrySet()){
+                    r -= e.getValue();
+                    if(r<0){ kind=e.getKey(); break; }
+                }
+                return new Op(kind, picks(rnd), null, valueFor(kind, rnd), null);
+            }
+        };
+    }
+
+    /**
+     * 再生ファイルをログ1件ずつに分ける。GET /api/logs の応答（JSON の文字列配列、整形の有無は問わない）
+     * ならその要素、それ以外は1行1件として扱う（空行は除く）。
+     */
+    static List<String> replayEntries(String content, ObjectMapper json) throws IOException {
+        String t = content.strip();
+        if(t.startsWith("[")){
+            String rest = t.substring(1).stripLeading();
+            if(rest.startsWith("\"") || rest.startsWith("]")) return List.of(json.readValue(t, String[].class));
+        }
+        List<String> lines = new ArrayList<>();
+        for(String line: content.split("\\R")) if(!line.isBlank()) lines.add(line);
+        return lines;
+    }
+
+    /**
+     * /api/logs の各件（"[時刻] [種別] 本文"）を時系列順に並べ直して操作列にする。
+     * 送信内容がログに残らない部分（会社の出資者・配分先）は seed から補う。
+     * 本文が残らない種別（MATRIX など）は再生しない。形式が崩れた件があれば、
+     * または再生できる件が1つもなければ IllegalArgumentException（件番号付き）。
+     */
+    static List<Op> replayOps(List<String> entries, Random rnd){
+        record Entry(OffsetDateTime at, Op op) {}
+        List<Entry> parsed = new ArrayList<>();
+        for(int k=0;k<entries.size();k++){
+            String line = entries.get(k).trim();
+            try{
+                Matcher m = LOG_LINE.matcher(line);
+                if(!m.matches()) throw new IllegalArgumentException("not an action log entry: "+line);
+                Map<String,String> kv = parseKv(m.group(3));
+                Op op = switch(m.group(2)){
+                    case "TRANSACTION" -> new Op(Kind.TRANSACTION, picks(rnd),
+                        new int[]{Integer.parseInt(required(kv,"buyer")), Integer.parseInt(required(kv,"seller"))},
+                        Double.parseDouble(required(kv,"delta")), null);
+                    case "RECOVERY" -> new Op(Kind.RECOVERY, picks(rnd), null, Double.parseDouble(required(kv,"gamma")), null);
+                    case "MEMBER_ADD" -> new Op(Kind.MEMBER, picks(rnd), null, 0, required(kv,"name"));
+                    case "COMPANY_CREATE" -> new Op(Kind.COMPANY, picks(rnd), null, Double.parseDouble(required(kv,"budget")), required(kv,"name"));
+                    case "GHOST" -> new Op(Kind.GHOST, picks(rnd), new int[]{Integer.parseInt(required(kv,"id"))}, 0, null);
+                    default -> null; // MATRIX などは本文が残らないため再生しない
+                };
+                if(op!=null) parsed.add(new Entry(OffsetDateTime.parse(m.group(1)), op));
+            }catch(IllegalArgumentException | DateTimeParseException e){
+                throw new IllegalArgumentException("replay entry "+(k+1)+": "+e.getMessage(), e);
+            }
+        }
+        if(parsed.isEmpty()) throw new IllegalArgumentException("no replayable entries in "+entries.size()+" log entries");
+        parsed.sort(Comparator.comparing(Entry::at)); // 安定ソート：同時刻は元の順
+        List<Op> ops = new ArrayList<>(parsed.size());
+        for(Entry e:parsed) ops.add(e.op());
+        return ops;
+    }
+
+    private static String required(Map<String,String> kv, String key){
+        String v = kv.get(key);
+        if(v==null) throw new IllegalArgumentException("missing "+key+"=");
+        return v;
+    }
+
+    /**
+     * "a=1, b=2" / "id=3 name=x y budget=0.5" 形式の本文を分解。
+     * 値は次の "key=" の直前まで（名前に空白が入っていてもよい）。
+     */
+    static Map<String,String> parseKv(String body){
+        Map<String,String> kv = new HashMap<>();
+        Matcher m = KV_KEY.matcher(body);
+        String key = null;
+        int valueStart = 0;
+        while(m.find()){
+            if(key!=null) kv.put(key, body.substring(valueStart, m.start()));
+            key = m.group(1);
+            valueStart = m.end();
+        }
+        if(key!=null) kv.put(key, body.substring(valueStart).trim());
+        return kv;
+    }
+
+    private static int[] picks(Random rnd){
+        return new int[]{ rnd.nextInt(Integer.MAX_VALUE), rnd.nextInt(Integer.MAX_VALUE), rnd.nextInt(Integer.MAX_VALUE) };
+    }
+
+    private static double valueFor(Kind kind, Random rnd){
+        return switch(kind){
+            case TRANSACTION -> 0.001 + rnd.nextDouble()*0.049; // 価格 δ
+            case RECOVERY -> 0.01 + rnd.nextDouble()*0.09;      // γ
+            case COMPANY -> 0.1 + rnd.nextDouble()*0.4;         // 会社の予算
+            default -> 0.0;
+        };
+    }
+
+    // ===== 実行 =====
+
+    private void execute(Op op, long dueNanos){
+        Recorder rec = recorders.get(op.kind());
+        HttpRequest req = toRequest(op);
+        if(req==null){ rec.skip(); return; }
+        try{
+            HttpResponse<InputStream> res = http.send(req, HttpResponse.BodyHandlers.ofInputStream());
+            int status = res.statusCode();
+            try(InputStream body = res.body()){
+                if(status/100==2){
+                    Roster r = parseRoster(body, json);
+                    if(r!=null) roster = r;
+                    body.transferTo(OutputStream.nullOutputStream()); // 残り（matrix など）は読み捨て
+                    rec.ok(System.nanoTime()-dueNanos);
+                }else{
+                    String text = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                    long latency = System.nanoTime()-dueNanos;
+                    if(text.contains(BUDGET_REJECTION)) rec.budgetRejected(latency);
+                    else rec.error(latency);
+                }
+            }
+        }catch(IOException e){
+            rec.transportError();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            rec.transportError();
+        }
+    }
+
+    /** 操作を HTTP リクエストにする（名簿不足などで組めない場合は null） */
+    private HttpRequest toRequest(Op op){
+        Roster r = roster;
+        int[] p = op.picks();
+        return switch(op.kind()){
+            case STATE -> get("/api/state");
+            case TRANSACTION -> {
+                int buyer, seller;
+                if(op.ids()!=null){ buyer=op.ids()[0]; seller=op.ids()[1]; }
+                else{
+                    int n = r.all().size();
+                    if(n<2) yield null;
+                    int b = p[0]%n;
+                    buyer = r.all().get(b);
+                    seller = r.all().get((b+1+p[1]%(n-1))%n);
+                }
+                yield post("/api/transactions", Map.of("buyerId",buyer,"sellerId",seller,"price",op.value()));
+            }
+            case RECOVERY -> post("/api/recovery", Map.of("gamma",op.value()));
+            case MEMBER -> post("/api/members", Map.of("name", op.name()!=null ? op.name() : "lg-"+nameSeq.incrementAndGet()));
+            case COMPANY -> {
+                int n = r.all().size();
+                if(n<1) yield null;
+                int founder = r.all().get(p[0]%n);
+                int o1 = r.all().get(p[1]%n), o2 = r.all().get(p[2]%n);
+                yield post("/api/companies", Map.of(
+                    "name", op.name()!=null ? op.name() : "lg-co-"+nameSeq.incrementAndGet(),
+                    "budget", op.value(),
+                    "founders", List.of(Map.of("memberId",founder,"invest",0.05)),
+                    "outflows", List.of(Map.of("memberId",o1,"weight",1.0), Map.of("memberId",o2,"weight",1.0))));
+            }
+            case DECOMPOSE -> {
+                if(r.companies().isEmpty()) yield null;
+                yield get("/api/companies/"+r.companies().get(p[0]%r.companies().size())+"/decompose");
+            }
+            case GHOST -> {
+                int id;
+                if(op.ids()!=null) id=op.ids()[0];
+                else{
+                    int n = r.all().size();
+                    if(n<=2) yield null; // 取引が組めるよう最低2人は残す
+                    id = r.all().get(p[0]%n);
+                }
+                yield post("/api/members/"+id+"/ghost", null);
+            }
+        };
+    }
+
+    private HttpRequest get(String path){
+        return HttpRequest.newBuilder(base.resolve(path)).GET().build();
+    }
+
+    private HttpRequest post(String path, Object body){
+        try{
+            HttpRequest.BodyPublisher pub = body==null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(json.writeValueAsString(body));
+            return HttpRequest.newBuilder(base.resolve(path))
+                .header("Content-Type","application/json")
+                .POST(pub).build();
+        }catch(IOException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * StateResponse の members だけをストリームで読んで名簿にする（members 以外のフィールドは木にしない）。
+     * members を読み終えたらそこで止めるので、後ろの matrix は走査もしない。members が無い応答は null。
+     */
+    static Roster parseRoster(InputStream body, ObjectMapper json){
+        try{
+            JsonParser p = json.createParser(body);
+            p.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if(p.nextToken()!=JsonToken.START_OBJECT) return null;
+            while(p.nextToken()==JsonToken.FIELD_NAME){
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if(!"members".equals(field) || value!=JsonToken.START_ARRAY){
+                    p.skipChildren();
+                    continue;
+                }
+                List<Integer> all = new ArrayList<>(), companies = new ArrayList<>();
+                while(p.nextToken()==JsonToken.START_OBJECT){
+                    JsonNode m = p.readValueAsTree();
+                    if(!"ACTIVE".equals(m.path("status").asText())) continue;
+                    int id = m.path("id").asInt();
+                    all.add(id);
+                    if("COMPANY".equals(m.path("type").asText())) companies.add(id);
+                }
+                return new Roster(all, companies);
+            }
+            return null;
+        }catch(IOException ignored){
+            return null; // 名簿更新は best effort
+        }
+    }
+
+    private void refreshRoster() throws IOException, InterruptedException {
+        HttpResponse<InputStream> res = http.send(get("/api/state"), HttpResponse.BodyHandlers.ofInputStream());
+        try(InputStream body = res.body()){
+            if(res.statusCode()!=200) throw new IllegalStateException("GET /api/state -> "+res.statusCode()+" (is the app running at "+base+"?)");
+            Roster r = parseRoster(body, json);
+            if(r!=null) roster = r;
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    // ===== サーバ JVM 統計 =====
+
+    /** /actuator/metrics から割当量・GC 回数・GC 停止時間・ヒープ使用量を取得 */
+    private Map<String,Double> serverMetrics(){
+        Map<String,Double> m = new LinkedHashMap<>();
+        m.put("allocatedBytes", metric("jvm.gc.memory.allocated", "COUNT", null));
+        m.put("gcCount", metric("jvm.gc.pause", "COUNT", null));
+        m.put("gcPauseSeconds", metric("jvm.gc.pause", "TOTAL_TIME", null));
+        m.put("heapUsedBytes", metric("jvm.memory.used", "VALUE", "area:heap"));
+        return m;
+    }
+
+    private Double metric(String name, String statistic, String tag){
+        try{
+            String path = "/actuator/metrics/"+name+(tag!=null ? "?tag="+tag : "");
+            HttpResponse<String> res = http.send(get(path), HttpResponse.BodyHandlers.ofString());
+            if(res.statusCode()!=200) return null;
+            for(JsonNode mm: json.readTree(res.body()).path("measurements")){
+                if(statistic.equals(mm.path("statistic").asText())) return mm.path("value").asDouble();
+            }
+            return null;
+        }catch(IOException e){
+            return null;
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // ===== 出力 =====
+
+    private void report(double rate, long seed, long planned, double elapsedSec,
+                        Map<String,Double> before, Map<String,Double> after) throws IOException {
+        Map<String,Object> out = new LinkedHashMap<>();
+        Map<String,Object> config = new LinkedHashMap<>(opts);
+        config.put("rate", rate);
+        config.put("seed", seed);
+        config.put("plannedRequests", planned);
+        out.put("config", config);
+        out.put("elapsedSeconds", elapsedSec);
+
+        Recorder overall = new Recorder();
+        Map<String,Object> perOp = new LinkedHashMap<>();
+        for(var e:recorders.entrySet()){
+            Recorder r = e.getValue();
+            if(r.attempts()==0) continue;
+            perOp.put(e.getKey().key, r.summary(elapsedSec));
+            overall.merge(r);
+        }
+        out.put("overall", overall.summary(elapsedSec));
+        out.put("operations", perOp);
+
+        Map<String,Object> server = new LinkedHashMap<>();
+        server.put("allocatedBytes", delta(before, after, "allocatedBytes"));
+        server.put("gcCount", delta(before, after, "gcCount"));
+        server.put("gcPauseMs", Optional.ofNullable(delta(before, after, "gcPauseSeconds")).map(s -> s*1000).orElse(null));
+        server.put("heapUsedBytesAfter", after.get("heapUsedBytes"));
+        out.put("serverJvm", server);
+
+        String text = json.writerWithDefaultPrettyPrinter().writeValueAsString(out);
+        if(opts.containsKey("out")) Files.writeString(Path.of(opts.get("out")), text, StandardCharsets.UTF_8);
+        else System.out.println(text);
+    }
+
+    private static Double delta(Map<String,Double> before, Map<String,Double> after, String key){
+        Double a = before.get(key), b = after.get(key);
+        return (a==null || b==null) ? null : b-a;
+    }
+
+    /** 操作種別ごとのレイテンシと結果件数 */
+    static final class Recorder {
+        private final Histogram latencies = new Histogram();
+        private long ok, errors, budgetRejections, transportErrors, skipped;
+
+        synchronized void ok(long nanos){ ok++; latencies.record(nanos); }
+        synchronized void error(long nanos){ errors++; latencies.record(nanos); }
+        synchronized void budgetRejected(long nanos){ budgetRejections++; latencies.record(nanos); }
+        synchronized void transportError(){ transportErrors++; }
+        synchronized void skip(){ skipped++; }
+
+        synchronized long attempts(){ return ok+errors+budgetRejections+transportErrors+skipped; }
+
+        synchronized void merge(Recorder o){
+            synchronized(o){
+                latencies.merge(o.latencies);
+                ok+=o.ok; errors+=o.errors; budgetRejections+=o.budgetRejections;
+                transportErrors+=o.transportErrors; skipped+=o.skipped;
+            }
+        }
+
+        synchronized Map<String,Object> summary(double elapsedSec){
+            long sent = ok+errors+budgetRejections+transportErrors;
+            Map<String,Object> s = new LinkedHashMap<>();
+            s.put("requests", sent);
+            s.put("ok", ok);
+            s.put("errors", errors);
+            s.put("budgetRejections", budgetRejections);
+            s.put("transportErrors", transportErrors);
+            s.put("skipped", skipped);
+            s.put("errorRate", sent==0 ? 0.0 : (double)(errors+transportErrors)/sent);
+            s.put("budgetRejectionRate", sent==0 ? 0.0 : (double)budgetRejections/sent);
+            s.put("throughputPerSec", elapsedSec<=0 ? 0.0 : sent/elapsedSec);
+            s.put("p50Ms", percentileMs(0.50));
+            s.put("p99Ms", percentileMs(0.99));
+            s.put("p999Ms", percentileMs(0.999));
+            s.put("maxMs", latencies.count()==0 ? null : latencies.max()/1e6);
+            return s;
+        }
+
+        private Double percentileMs(double p){
+            return latencies.count()==0 ? null : latencies.valueAt(p)/1e6;
+        }
+    }
+
+    /**
+     * 対数線形ヒストグラム（ナノ秒）。2^k ごとの区間を 32 等分したバケットに数えるので、
+     * 32 未満は正確、それ以上は相対誤差 1/32 以内。件数によらずメモリは一定（約 15KB）。
+     */
+    static final class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB = 1<<SUB_BITS;
+        private final long[] counts = new long[(64-SUB_BITS)*SUB];
+        private long count, max;
+
+        void record(long nanos){
+            long v = Math.max(0, nanos);
+            counts[bucketOf(v)]++;
+            count++;
+            max = Math.max(max, v);
+        }
+
+        void merge(Histogram o){
+            for(int i=0;i<counts.length;i++) counts[i]+=o.counts[i];
+            count+=o.count;
+            max = Math.max(max, o.max);
+        }
+
+        long count(){ return count; }
+
+        long max(){ return max; }
+
+        /** p 分位（0<p<=1）。該当バケットの上端を返す（max を超えない） */
+        long valueAt(double p){
+            if(count==0) throw new IllegalStateException("empty histogram");
+            long rank = Math.max(1, (long)Math.ceil(p*count));
+            long seen = 0;
+            for(int i=0;i<counts.length;i++){
+                seen += counts[i];
+                if(seen>=rank) return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+
+        private static int bucketOf(long v){
+            if(v<SUB) return (int)v;
+            int shift = 63-Long.numberOfLeadingZeros(v)-SUB_BITS;
+            return (shift+1)*SUB + (int)((v>>>shift)-SUB);
+        }
+
+        private static long upperBound(int bucket){
+            if(bucket<SUB) return bucket;
+            int shift = bucket/SUB-1;
+            long sub = bucket%SUB + SUB;
+            return (sub<<shift) + ((1L<<shift)-1);
+        }
+    }
+}
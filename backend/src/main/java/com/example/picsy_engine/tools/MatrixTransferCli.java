@@ -0,0 +1,63 @@
+package com.example.picsy_engine.tools;
+
+import com.example.picsy_engine.transfer.MatrixFormat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 評価行列＋メンバーの一括取込/書出しを起動中のアプリに対して行う CLI。
+ * ファイルはストリーミングで送受信するので、n が大きくてもこちら側のメモリは増えない。
+ *
+ * 実行例:
+ *   mvn -Pmatrix-transfer exec:java -Dexec.args="import --file=community.csv --format=csv"
+ *   mvn -Pmatrix-transfer exec:java -Dexec.args="export --file=community.bin --format=binary"
+ *
+ * オプション: --base=http://localhost:8080, --file=..., --format=csv|tsv|triplet|binary（既定 csv）
+ */
+public final class MatrixTransferCli {
+    private MatrixTransferCli(){}
+
+    public static void main(String[] args) throws Exception {
+        if(args.length==0 || !(args[0].equals("import") || args[0].equals("export"))){
+            System.err.println("usage: (import|export) --file=PATH [--format=csv|tsv|triplet|binary] [--base=URL]");
+            System.exit(2);
+        }
+        Map<String,String> opts = new LinkedHashMap<>();
+        for(int i=1;i<args.length;i++){
+            String a=args[i];
+            if(!a.startsWith("--") || !a.contains("=")) throw new IllegalArgumentException("expected --key=value: "+a);
+            int eq=a.indexOf('=');
+            opts.put(a.substring(2,eq), a.substring(eq+1));
+        }
+        if(!opts.containsKey("file")) throw new IllegalArgumentException("--file is required");
+        Path file = Path.of(opts.get("file"));
+        MatrixFormat format = MatrixFormat.of(opts.getOrDefault("format","csv"));
+        URI base = URI.create(opts.getOrDefault("base","http://localhost:8080"));
+        String query = "?format="+format.name().toLowerCase();
+        HttpClient http = HttpClient.newHttpClient();
+
+        if(args[0].equals("import")){
+            HttpRequest req = HttpRequest.newBuilder(base.resolve("/api/matrix/import"+query))
+                .header("Content-Type", format.contentType())
+                .PUT(HttpRequest.BodyPublishers.ofFile(file))
+                .build();
+            HttpResponse<String> res = http.send(req, HttpResponse.BodyHandlers.ofString());
+            System.out.println(res.body());
+            if(res.statusCode()/100!=2) System.exit(1);
+        }else{
+            HttpRequest req = HttpRequest.newBuilder(base.resolve("/api/matrix/export"+query)).GET().build();
+            HttpResponse<Path> res = http.send(req, HttpResponse.BodyHandlers.ofFile(file));
+            if(res.statusCode()/100!=2){
+                System.err.println("export failed: HTTP "+res.statusCode()+" (see "+file+")");
+                System.exit(1);
+            }
+            System.out.println("wrote "+file);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.picsy_engine.transfer;
+
+/**
+ * 1行分のフィールドを先頭から順に切り出す。
+ * 行全体を String[] に分割しないので、n 列の行でも余分な配列を作らない。
+ * quoted=true のとき CSV の "..."（"" はエスケープ）に対応する。
+ */
+final class FieldCursor {
+    private final String line;
+    private final char delim;
+    private final boolean quoted;
+    private int pos;
+
+    FieldCursor(String line, char delim, boolean quoted){
+        this.line=line; this.delim=delim; this.quoted=quoted;
+    }
+
+    boolean hasNext(){ return pos<=line.length(); }
+
+    String next(){
+        if(!hasNext()) throw new IllegalArgumentException("missing field");
+        if(quoted && pos<line.length() && line.charAt(pos)=='"'){
+            StringBuilder sb = new StringBuilder();
+            int i = pos+1;
+            while(true){
+                if(i>=line.length()) throw new IllegalArgumentException("unterminated quote");
+                char ch = line.charAt(i);
+                if(ch=='"'){
+                    if(i+1<line.length() && line.charAt(i+1)=='"'){ sb.append('"'); i+=2; continue; }
+                    i++;
+                    break;
+                }
+                sb.append(ch); i++;
+            }
+            if(i<line.length() && line.charAt(i)!=delim) throw new IllegalArgumentException("unexpected character after quote");
+            pos = i+1;
+            return sb.toString();
+        }
+        int end = line.indexOf(delim, pos);
+        if(end<0) end = line.length();
+        String s = line.substring(pos, end);
+        pos = end+1;
+        return s;
+    }
+
+    /** 残りのフィールド数（現在位置は動かさない） */
+    int remaining(){
+        FieldCursor c = new FieldCursor(line, delim, quoted);
+        c.pos = pos;
+        int k=0;
+        while(c.hasNext()){ c.next(); k++; }
+        return k;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.picsy_engine.transfer;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 長さ上限付きの行読み取り（改行は \n, \r\n, \r）。
+ * BufferedReader.readLine は改行が来るまで際限なく溜めるため、
+ * 上限を超えた時点で IllegalArgumentException にして、それ以上は読まない。
+ */
+final class LineReader {
+    private final Reader in;
+    private final int maxChars;
+    private final char[] buf = new char[1<<13];
+    private int pos, end;
+    private boolean skipLf;
+
+    LineReader(Reader in, int maxChars){
+        this.in=in; this.maxChars=maxChars;
+    }
+
+    /** 次の1行（改行を含まない）。入力の終わりなら null */
+    String readLine() throws IOException {
+        StringBuilder sb = null;
+        while(true){
+            if(pos>=end){
+                end = in.read(buf, 0, buf.length);
+                pos = 0;
+                if(end<=0){
+                    end = 0;
+                    return sb==null ? null : sb.toString();
+                }
+            }
+            if(skipLf){
+                skipLf = false;
+                if(buf[pos]=='\n'){ pos++; continue; }
+            }
+            int start = pos;
+            while(pos<end && buf[pos]!='\n' && buf[pos]!='\r') pos++;
+            int len = (sb==null ? 0 : sb.length()) + (pos-start);
+            if(len>maxChars) throw new IllegalArgumentException("line too long (max "+maxChars+" chars)");
+            if(sb==null) sb = new StringBuilder(Math.min(len+16, maxChars));
+            sb.append(buf, start, pos-start);
+            if(pos<end){
+                skipLf = buf[pos]=='\r';
+                pos++;
+                return sb.toString();
+            }
+        }
+    }
+}
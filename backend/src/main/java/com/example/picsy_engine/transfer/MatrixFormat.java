@@ -0,0 +1,26 @@
+package com.example.picsy_engine.transfer;
+
+/**
+ * 一括取込/書出しの形式。
+ * - CSV / TSV : 1行 = 1メンバー（id, name, type, status, 行の値 n 個）。先頭の "id" 行はヘッダとして読み飛ばす
+ * - TRIPLET   : 疎形式の CSV。"M,id,name,type,status" を index 順に全員分、その後 "E,i,j,value" を行番号の昇順で
+ * - BINARY    : ビッグエンディアンのバイナリ（ヘッダ、メンバー n 件、行 n 本）。精度は float32/float64
+ */
+public enum MatrixFormat {
+    CSV("text/csv"),
+    TSV("text/tab-separated-values"),
+    TRIPLET("text/csv"),
+    BINARY("application/octet-stream");
+
+    private final String contentType;
+
+    MatrixFormat(String contentType){ this.contentType=contentType; }
+
+    public String contentType(){ return contentType; }
+
+    /** クエリ/CLI 引数の "csv" などから引く */
+    public static MatrixFormat of(String name){
+        for(MatrixFormat f:values()) if(f.name().equalsIgnoreCase(name.trim())) return f;
+        throw new IllegalArgumentException("unknown format: "+name);
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.picsy_engine.transfer;
+
+import com.example.picsy_engine.domain.MemberStatus;
+import com.example.picsy_engine.domain.MemberType;
+import com.example.picsy_engine.util.MatrixUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 評価行列とメンバーをストリームから1行ずつ読み、正規化しながら MatrixSink へ流す。
+ * 行列全体を中間表現として持たないので、読み取り側の追加メモリは O(n)（1行分のバッファ）。
+ * 形式エラーは IllegalArgumentException（行番号付き）で通知する。NaN/無限大の値も形式エラー。
+ * メンバー数 n は入力（バイナリでは未検証のヘッダ）から決まるため、
+ * MatrixSink.begin(n) で n×n の確保が走る前に上限 maxMembers と照合する。
+ * テキストの1行も maxMembers から決まる文字数を上限とし、改行の無い巨大な行を溜め込まない。
+ */
+public final class MatrixReader {
+    private MatrixReader(){}
+
+    static final int BINARY_MAGIC = 0x50494353; // "PICS"
+    static final int BINARY_VERSION = 1;
+    /** 行長の上限に使う1フィールドあたりの文字数（double の最短表記は最長でも 24 文字程度） */
+    static final int MAX_FIELD_CHARS = 32;
+    /** 行長の上限に加える名前フィールドの分（バイナリの writeUTF と同じ 65535） */
+    static final int MAX_NAME_CHARS = 65535;
+
+    /** 読み取ったメンバー数 n を返す（n が maxMembers を超える入力は確保前に拒否） */
+    public static int read(InputStream in, MatrixFormat format, int maxMembers, MatrixSink sink) throws IOException {
+        return switch(format){
+            case CSV -> readDense(lines(in, maxMembers+4), ',', true, maxMembers, sink);
+            case TSV -> readDense(lines(in, maxMembers+4), '\t', false, maxMembers, sink);
+            case TRIPLET -> readTriplet(lines(in, 5), maxMembers, sink);
+            case BINARY -> readBinary(new DataInputStream(new BufferedInputStream(in)), maxMembers, sink);
+        };
+    }
+
+    /** fields 個のフィールドを持つ行が収まる長さを上限とした行読み取り */
+    private static LineReader lines(InputStream in, int fields){
+        long limit = (long)fields*MAX_FIELD_CHARS + MAX_NAME_CHARS;
+        return new LineReader(new InputStreamReader(in, StandardCharsets.UTF_8), (int)Math.min(limit, Integer.MAX_VALUE-8));
+    }
+
+    /**
+     * 密形式: id, name, type, status, v_0 .. v_{n-1}
+     * 先頭の見出し行（id, name, type, status, 列のメンバーID..）は省略可。あれば列数が n と一致し、
+     * 列のメンバーIDが各行の id と同じ順に並んでいることを確かめる。
+     */
+    private static int readDense(LineReader in, char delim, boolean quoted, int maxMembers, MatrixSink sink) throws IOException {
+        int n=-1, i=0;
+        int[] header=null;
+        double[] row=null;
+        for(int lineNo=1;;lineNo++){
+            try{
+                String line = in.readLine();
+                if(line==null) break;
+                if(line.isBlank() || line.startsWith("#")) continue;
+                FieldCursor f = new FieldCursor(line, delim, quoted);
+                String first = f.next().trim();
+                if("id".equalsIgnoreCase(first)){
+                    if(header!=null || n>=0) throw new IllegalArgumentException("unexpected header");
+                    f.next(); f.next(); f.next(); // name, type, status
+                    int k = f.remaining();
+                    if(k<=0) throw new IllegalArgumentException("no matrix columns");
+                    checkSize(k, maxMembers);
+                    header = new int[k];
+                    for(int j=0;j<k;j++) header[j] = Integer.parseInt(f.next().trim());
+                    continue;
+                }
+                if(n<0){
+                    n = f.remaining()-3;
+                    if(n<=0) throw new IllegalArgumentException("no matrix columns");
+                    if(header!=null && header.length!=n) throw new IllegalArgumentException("header has "+header.length+" member columns, row has "+n+" values");
+                    checkSize(n, maxMembers);
+                    sink.begin(n);
+                    row = new double[n];
+                }
+                if(i>=n) throw new IllegalArgumentException("more rows than columns (n="+n+")");
+                int id = Integer.parseInt(first);
+                if(header!=null && header[i]!=id) throw new IllegalArgumentException("row id "+id+" does not match header column "+i+" (id "+header[i]+")");
+                sink.member(i, id, f.next(), memberType(f.next()), memberStatus(f.next()));
+                for(int j=0;j<n;j++){
+                    if(!f.hasNext()) throw new IllegalArgumentException("expected "+n+" values");
+                    row[j] = value(f.next());
+                }
+                if(f.hasNext()) throw new IllegalArgumentException("expected "+n+" values");
+                MatrixUtils.normalizeRowInPlace(row, i);
+                sink.row(i, row);
+                i++;
+            }catch(IllegalArgumentException e){
+                throw new IllegalArgumentException("line "+lineNo+": "+e.getMessage(), e);
+            }
+        }
+        if(n<0) throw new IllegalArgumentException("empty input");
+        if(i!=n) throw new IllegalArgumentException("expected "+n+" rows, got "+i);
+        return n;
+    }
+
+    /**
+     * 疎形式: "M,id,name,type,status" を全員分 → "E,i,j,value" を行番号の昇順で。
+     * 同じ (i,j) が複数回出た場合は加算する。値が1つもない行はゼロ行としてエラー。
+     */
+    private static int readTriplet(LineReader in, int maxMembers, MatrixSink sink) throws IOException {
+        record Pending(int id, String name, MemberType type, MemberStatus status) {}
+        List<Pending> pending = new ArrayList<>();
+        int n=-1, cur=-1;
+        double[] row=null;
+        for(int lineNo=1;;lineNo++){
+            try{
+                String line = in.readLine();
+                if(line==null) break;
+                if(line.isBlank() || line.startsWith("#")) continue;
+                FieldCursor f = new FieldCursor(line, ',', true);
+                String tag = f.next().trim();
+                if("M".equals(tag)){
+                    if(n>=0) throw new IllegalArgumentException("member after entries");
+                    checkSize(pending.size()+1, maxMembers);
+                    pending.add(new Pending(Integer.parseInt(f.next().trim()), f.next(), memberType(f.next()), memberStatus(f.next())));
+                }else if("E".equals(tag)){
+                    if(n<0){
+                        n = pending.size();
+                        if(n==0) throw new IllegalArgumentException("no members before entries");
+                        sink.begin(n);
+                        for(int k=0;k<n;k++){
+                            Pending p = pending.get(k);
+                            sink.member(k, p.id(), p.name(), p.type(), p.status());
+                        }
+                        pending = null;
+                        row = new double[n];
+                    }
+                    int i = Integer.parseInt(f.next().trim());
+                    int j = Integer.parseInt(f.next().trim());
+                    double v = value(f.next());
+                    if(i<0 || i>=n || j<0 || j>=n) throw new IllegalArgumentException("index out of range: ("+i+","+j+")");
+                    if(i<cur) throw new IllegalArgumentException("entries must be sorted by row");
+                    while(cur<i){
+                        if(cur>=0) flush(row, cur, sink);
+                        cur++;
+                    }
+                    row[j] += v;
+                    if(!Double.isFinite(row[j])) throw new IllegalArgumentException("value overflow at ("+i+","+j+")");
+                }else{
+                    throw new IllegalArgumentException("unknown record: "+tag);
+                }
+            }catch(IllegalArgumentException e){
+                throw new IllegalArgumentException("line "+lineNo+": "+e.getMessage(), e);
+            }
+        }
+        if(n<0) throw new IllegalArgumentException("no entries");
+        while(cur<n){
+            flush(row, cur, sink);
+            cur++;
+        }
+        return n;
+    }
+
+    private static void flush(double[] row, int index, MatrixSink sink){
+        MatrixUtils.normalizeRowInPlace(row, index);
+        sink.row(index, row);
+        Arrays.fill(row, 0.0);
+    }
+
+    /**
+     * バイナリ: magic, version, n, 精度(4|8), メンバー n 件(id, name(UTF), type, status), 行 n 本。
+     * 途中で入力が尽きた場合も IllegalArgumentException にする。
+     */
+    private static int readBinary(DataInputStream in, int maxMembers, MatrixSink sink) throws IOException {
+        try{
+            return readBinaryBody(in, maxMembers, sink);
+        }catch(EOFException e){
+            throw new IllegalArgumentException("unexpected end of input", e);
+        }
+    }
+
+    private static int readBinaryBody(DataInputStream in, int maxMembers, MatrixSink sink) throws IOException {
+        if(in.readInt()!=BINARY_MAGIC) throw new IllegalArgumentException("not a PICSY binary matrix");
+        int version = in.readInt();
+        if(version!=BINARY_VERSION) throw new IllegalArgumentException("unsupported version: "+version);
+        int n = in.readInt();
+        if(n<=0) throw new IllegalArgumentException("invalid size: "+n);
+        checkSize(n, maxMembers);
+        int precision = in.readByte();
+        if(precision!=4 && precision!=8) throw new IllegalArgumentException("invalid precision: "+precision);
+
+        sink.begin(n);
+        MemberType[] types = MemberType.values();
+        MemberStatus[] statuses = MemberStatus.values();
+        for(int i=0;i<n;i++){
+            int id = in.readInt();
+            String name = in.readUTF();
+            int t = in.readByte(), s = in.readByte();
+            if(t<0 || t>=types.length || s<0 || s>=statuses.length) throw new IllegalArgumentException("member "+i+": invalid type/status");
+            sink.member(i, id, name, types[t], statuses[s]);
+        }
+        double[] row = new double[n];
+        for(int i=0;i<n;i++){
+            for(int j=0;j<n;j++) row[j] = precision==4 ? in.readFloat() : in.readDouble();
+            MatrixUtils.normalizeRowInPlace(row, i);
+            sink.row(i, row);
+        }
+        return n;
+    }
+
+    /** 値フィールド。NaN/無限大は行番号付きのエラーにするため、ここで拒否する */
+    private static double value(String s){
+        double v = Double.parseDouble(s.trim());
+        if(!Double.isFinite(v)) throw new IllegalArgumentException("non-finite value: "+s.trim());
+        return v;
+    }
+
+    private static void checkSize(int n, int maxMembers){
+        if(n>maxMembers) throw new IllegalArgumentException("too many members: "+n+" (max "+maxMembers+")");
+    }
+
+    private static MemberType memberType(String s){ return MemberType.valueOf(s.trim().toUpperCase()); }
+
+    private static MemberStatus memberStatus(String s){ return MemberStatus.valueOf(s.trim().toUpperCase()); }
+}
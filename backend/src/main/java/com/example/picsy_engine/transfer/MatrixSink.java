@@ -0,0 +1,20 @@
+package com.example.picsy_engine.transfer;
+
+import com.example.picsy_engine.domain.MemberStatus;
+import com.example.picsy_engine.domain.MemberType;
+
+/**
+ * 取込側の受け口。MatrixReader が読み取ったメンバーと行を1件ずつ渡す。
+ * 呼び出し順は begin → (member / row) の繰り返し。member(i) は必ず row(i) より先に来る。
+ */
+public interface MatrixSink {
+
+    /** メンバー数 n が確定した時点で1回だけ呼ばれる */
+    void begin(int n);
+
+    /** index 番目のメンバー */
+    void member(int index, int id, String name, MemberType type, MemberStatus status);
+
+    /** index 行目（正規化済み）。配列は次の行で再利用されるので保持しないこと */
+    void row(int index, double[] values);
+}
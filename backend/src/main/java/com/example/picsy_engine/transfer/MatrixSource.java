@@ -0,0 +1,17 @@
+package com.example.picsy_engine.transfer;
+
+import com.example.picsy_engine.domain.Member;
+
+/** 書出し側の供給元。MatrixWriter が行を1本ずつ取り出す */
+public interface MatrixSource {
+
+    int size();
+
+    Member member(int index);
+
+    /** index 行目を dst（長さ n）に書き込む */
+    void row(int index, double[] dst);
+
+    /** 元データが float32 保存か（書出しの精度に使う） */
+    boolean singlePrecision();
+}
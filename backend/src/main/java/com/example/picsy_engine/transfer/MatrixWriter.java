@@ -0,0 +1,111 @@
+package com.example.picsy_engine.transfer;
+
+import com.example.picsy_engine.domain.Member;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MatrixSource の内容を1行ずつストリームへ書き出す（MatrixReader と対になる形式）。
+ * 追加メモリは O(n)（1行分のバッファ）。float32 保存のときは float の精度で書く。
+ * 出力ストリームは flush するが close はしない（呼び出し側の責任）。
+ */
+public final class MatrixWriter {
+    private MatrixWriter(){}
+
+    public static void write(MatrixSource src, MatrixFormat format, OutputStream out) throws IOException {
+        switch(format){
+            case CSV -> writeDense(src, ',', out);
+            case TSV -> writeDense(src, '\t', out);
+            case TRIPLET -> writeTriplet(src, out);
+            case BINARY -> writeBinary(src, out);
+        }
+    }
+
+    private static Writer writer(OutputStream out){
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1<<16);
+    }
+
+    private static void writeDense(MatrixSource src, char delim, OutputStream out) throws IOException {
+        int n = src.size();
+        Writer w = writer(out);
+        // ヘッダ: 列見出しは各列のメンバーID
+        w.write("id"+delim+"name"+delim+"type"+delim+"status");
+        for(int j=0;j<n;j++){ w.write(delim); w.write(Integer.toString(src.member(j).getId())); }
+        w.write('\n');
+
+        double[] row = new double[n];
+        for(int i=0;i<n;i++){
+            writeMember(w, src.member(i), delim);
+            src.row(i, row);
+            for(int j=0;j<n;j++){ w.write(delim); w.write(number(row[j], src.singlePrecision())); }
+            w.write('\n');
+        }
+        w.flush();
+    }
+
+    private static void writeTriplet(MatrixSource src, OutputStream out) throws IOException {
+        int n = src.size();
+        Writer w = writer(out);
+        for(int i=0;i<n;i++){
+            w.write("M,");
+            writeMember(w, src.member(i), ',');
+            w.write('\n');
+        }
+        double[] row = new double[n];
+        for(int i=0;i<n;i++){
+            src.row(i, row);
+            for(int j=0;j<n;j++){
+                if(row[j]==0.0) continue;
+                w.write("E,"+i+","+j+","+number(row[j], src.singlePrecision())+"\n");
+            }
+        }
+        w.flush();
+    }
+
+    private static void writeBinary(MatrixSource src, OutputStream out) throws IOException {
+        int n = src.size();
+        boolean single = src.singlePrecision();
+        DataOutputStream d = new DataOutputStream(new BufferedOutputStream(out, 1<<16));
+        d.writeInt(MatrixReader.BINARY_MAGIC);
+        d.writeInt(MatrixReader.BINARY_VERSION);
+        d.writeInt(n);
+        d.writeByte(single ? 4 : 8);
+        for(int i=0;i<n;i++){
+            Member m = src.member(i);
+            d.writeInt(m.getId());
+            d.writeUTF(m.getName());
+            d.writeByte(m.getType().ordinal());
+            d.writeByte(m.getStatus().ordinal());
+        }
+        double[] row = new double[n];
+        for(int i=0;i<n;i++){
+            src.row(i, row);
+            for(int j=0;j<n;j++){
+                if(single) d.writeFloat((float) row[j]);
+                else d.writeDouble(row[j]);
+            }
+        }
+        d.flush();
+    }
+
+    private static void writeMember(Writer w, Member m, char delim) throws IOException {
+        w.write(Integer.toString(m.getId()));
+        w.write(delim); w.write(text(m.getName(), delim));
+        w.write(delim); w.write(m.getType().name());
+        w.write(delim); w.write(m.getStatus().name());
+    }
+
+    /** CSV は必要なら "..." で囲む。TSV は引用しないのでタブ/改行を空白に置き換える */
+    private static String text(String s, char delim){
+        String flat = s.replace('\n',' ').replace('\r',' ');
+        if(delim=='\t') return flat.replace('\t',' ');
+        if(flat.indexOf(delim)<0 && flat.indexOf('"')<0) return flat;
+        return "\""+flat.replace("\"","\"\"")+"\"";
+    }
+
+    private static String number(double v, boolean single){
+        if(v==0.0) return "0";
+        return single ? Float.toString((float) v) : Double.toString(v);
+    }
+}
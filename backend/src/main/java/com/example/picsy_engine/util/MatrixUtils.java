@@ -3,7 +3,9 @@ package com.example.picsy_engine.util;
 /**
  * 行列の補助関数をまとめたユーティリティ。
  * - copy: 二次元配列のディープコピー
- * - normalizeRowsInPlace: 各行を非負化し、行和=1に正規化
+ * - normalizeRowsInPlace: 各行を非負化し、行和=1に正規化（1行版 normalizeRowInPlace もあり）
+ * - toFloat / toDouble: float32 保存モードとの相互変換
+ * - maxAbsDiff: ベクトル同士の最大絶対誤差（精度比較用）
  */
 public final class MatrixUtils {
     private MatrixUtils(){}
@@ -15,17 +17,66 @@ public final class MatrixUtils {
         return dst;
     }
 
-    /** 各行を非負＆行和=1に正規化する（ゼロ行は例外） */
+    /** 2D 配列のディープコピー（float 版） */
+    public static float[][] copy(float[][] src){
+        int n = src.length; float[][] dst = new float[n][n];
+        for (int i=0;i<n;i++) System.arraycopy(src[i], 0, dst[i], 0, n);
+        return dst;
+    }
+
+    /** 各行を非負＆行和=1に正規化する（ゼロ行・NaN/無限大を含む行は例外） */
     public static void normalizeRowsInPlace(double[][] m){
+        for (int i=0;i<m.length;i++) normalizeRowInPlace(m[i], i);
+    }
+
+    /** 1行だけを非負＆行和=1に正規化する（ストリーミング取込で行ごとに使う。index はエラー表示用） */
+    public static void normalizeRowInPlace(double[] row, int index){
+        double s=0;
+        for (int j=0;j<row.length;j++){
+            if (!Double.isFinite(row[j])) throw new IllegalArgumentException("Row "+index+": non-finite value at column "+j);
+            row[j] = Math.max(0.0, row[j]);
+            s += row[j];
+        }
+        if (s<=0) throw new IllegalArgumentException("Row "+index+" sum is zero");
+        if (!Double.isFinite(s)) throw new IllegalArgumentException("Row "+index+" sum is not finite");
+        for (int j=0;j<row.length;j++) row[j] /= s;
+    }
+
+    /** float 版の行正規化。行和の累積と除算は double で行い、格納時のみ float に丸める */
+    public static void normalizeRowsInPlace(float[][] m){
         int n = m.length;
         for (int i=0;i<n;i++){
+            float[] row = m[i];
             double s=0;
             for (int j=0;j<n;j++){
-                m[i][j] = Math.max(0.0, m[i][j]);
-                s += m[i][j];
+                if (!Float.isFinite(row[j])) throw new IllegalArgumentException("Row "+i+": non-finite value at column "+j);
+                if (row[j] < 0f) row[j] = 0f;
+                s += row[j];
             }
             if (s<=0) throw new IllegalArgumentException("Row "+i+" sum is zero");
-            for (int j=0;j<n;j++) m[i][j] /= s;
+            for (int j=0;j<n;j++) row[j] = (float)(row[j] / s);
         }
     }
+
+    /** double → float へ丸めたコピー */
+    public static float[][] toFloat(double[][] src){
+        int n = src.length; float[][] dst = new float[n][n];
+        for (int i=0;i<n;i++) for (int j=0;j<n;j++) dst[i][j] = (float) src[i][j];
+        return dst;
+    }
+
+    /** float → double へ拡張したコピー */
+    public static double[][] toDouble(float[][] src){
+        int n = src.length; double[][] dst = new double[n][n];
+        for (int i=0;i<n;i++) for (int j=0;j<n;j++) dst[i][j] = src[i][j];
+        return dst;
+    }
+
+    /** 2ベクトルの最大絶対誤差 max_i |a_i - b_i| */
+    public static double maxAbsDiff(double[] a, double[] b){
+        if (a.length != b.length) throw new IllegalArgumentException("length mismatch");
+        double d=0;
+        for (int i=0;i<a.length;i++) d = Math.max(d, Math.abs(a[i]-b[i]));
+        return d;
+    }
 }
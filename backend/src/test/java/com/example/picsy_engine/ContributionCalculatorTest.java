@@ -4,6 +4,7 @@ package com.example.picsy_engine;
 // テストに必要な道具（ライブラリ）を使えるようにするためのインポート宣言です。
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.within;
+import java.util.Random;
 import org.ejml.simple.SimpleMatrix;
 import org.junit.jupiter.api.Test; // 正しい「定規」をインポートします
 
@@ -58,4 +59,157 @@ public class ContributionCalculatorTest {
         assertThat(actualB).isCloseTo(expectedB, within(0.01));
         assertThat(actualC).isCloseTo(expectedC, within(0.01));
     }
+
+    // float32 保存モード：float 行列 + double 累積の結果が float64 経路とほぼ一致するか
+    @Test
+    void testSinglePrecisionMatchesDoublePath() {
+        // --- 準備 (Given) ---
+        ContributionCalculator calculator = new ContributionCalculator();
+        double[][] e = {
+            {0.1, 0.6, 0.3},
+            {0.2, 0.1, 0.7},
+            {0.5, 0.4, 0.1}
+        };
+        float[][] ef = new float[3][3];
+        for (int i = 0; i < 3; i++) for (int j = 0; j < 3; j++) ef[i][j] = (float) e[i][j];
+
+        // --- 実行 (When) ---
+        SimpleMatrix c64 = calculator.calculate(new SimpleMatrix(e));
+        double[] c32 = calculator.calculate(ef);
+
+        // --- 検証 (Then) ---
+        // 差は float の丸め誤差（~1e-7）程度に収まるはずです。
+        double total = 0.0;
+        for (int i = 0; i < 3; i++) {
+            assertThat(c32[i]).isCloseTo(c64.get(i, 0), within(1e-5));
+            total += c32[i];
+        }
+        assertThat(total).isCloseTo(3.0, within(1e-9));
+    }
+
+    // ブロック分解版：取引関係が2つに分かれた行列で、全体のべき乗法と同じ c になるか
+    @Test
+    void testBlockSolveMatchesPowerIteration() {
+        // --- 準備 (Given) ---
+        // {A,B} と {C,D,E} の間には取引（非対角）がなく、予算（対角）だけで仮想的につながっています。
+        ContributionCalculator calculator = new ContributionCalculator();
+        double[][] e = {
+            {0.3, 0.7, 0.0, 0.0, 0.0},
+            {0.6, 0.4, 0.0, 0.0, 0.0},
+            {0.0, 0.0, 0.2, 0.5, 0.3},
+            {0.0, 0.0, 0.4, 0.1, 0.5},
+            {0.0, 0.0, 0.3, 0.3, 0.4}
+        };
+        ContributionBlocks blocks = ContributionBlocks.of(e);
+
+        // --- 実行 (When) ---
+        SimpleMatrix expected = calculator.calculate(new SimpleMatrix(e));
+        double[] actual = calculator.calculate(e, blocks);
+
+        // --- 検証 (Then) ---
+        assertThat(blocks.count()).isEqualTo(2);
+        double total = 0.0;
+        for (int i = 0; i < 5; i++) {
+            assertThat(actual[i]).isCloseTo(expected.get(i, 0), within(1e-6));
+            total += actual[i];
+        }
+        assertThat(total).isCloseTo(5.0, within(1e-9));
+
+        // 取引 A→C が加わると1つの成分にまとまります（全走査せずに更新）。
+        assertThat(blocks.linked(0, 2).count()).isEqualTo(1);
+    }
+
+    // ブロック分解版：ブロック間に弱い取引が残っていても、全体のべき乗法と同じ c になるか
+    @Test
+    void testBlockSolveHandlesWeakCoupling() {
+        // --- 準備 (Given) ---
+        // {A,B} と {C,D,E} の間に少額の取引（A→C 0.004, D→B 0.002）があります。
+        ContributionCalculator calculator = new ContributionCalculator();
+        double[][] e = {
+            {0.3, 0.696, 0.004, 0.0, 0.0},
+            {0.6, 0.4, 0.0, 0.0, 0.0},
+            {0.0, 0.0, 0.2, 0.5, 0.3},
+            {0.0, 0.002, 0.4, 0.1, 0.498},
+            {0.0, 0.0, 0.3, 0.3, 0.4}
+        };
+        // 少額の取引は行の均等配分 (1-E_ii)/4 の 0.5 倍に届かず、ブロックをつなぎません。
+        ContributionBlocks weak = ContributionBlocks.of(e, 0.5);
+        // 均等配分の10倍以上の取引はなく、全員が別々のブロックになります（結合はすべて反復で解く）。
+        ContributionBlocks singletons = ContributionBlocks.of(e, 10.0);
+
+        // --- 実行 (When) ---
+        SimpleMatrix expected = calculator.calculate(new SimpleMatrix(e));
+        double[] actual = calculator.calculate(e, weak);
+        double[] fromSingletons = calculator.calculate(e, singletons);
+
+        // --- 検証 (Then) ---
+        // しきい値0なら1つの成分ですが、0.5 では2つのブロックに分かれたまま解けます。
+        assertThat(ContributionBlocks.of(e).count()).isEqualTo(1);
+        assertThat(weak.count()).isEqualTo(2);
+        assertThat(singletons.count()).isEqualTo(5);
+        double total = 0.0;
+        for (int i = 0; i < 5; i++) {
+            assertThat(actual[i]).isCloseTo(expected.get(i, 0), within(1e-6));
+            assertThat(fromSingletons[i]).isCloseTo(expected.get(i, 0), within(1e-6));
+            total += actual[i];
+        }
+        assertThat(total).isCloseTo(5.0, within(1e-9));
+    }
+
+    // 多人数に薄く広く払う共同体は、1件あたりが小さくても相対しきい値では1つのブロックのままか
+    @Test
+    void testRelativeThresholdKeepsDiffuseCommunity() {
+        // --- 準備 (Given) ---
+        // 300人が予算 0.2 を残し、残りを他の全員へ均等に払います（1件あたり 0.8/299 ≒ 0.0027）。
+        int n = 300;
+        double[][] e = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) e[i][j] = i == j ? 0.2 : 0.8 / (n - 1);
+        }
+
+        // --- 実行 & 検証 (When / Then) ---
+        assertThat(ContributionBlocks.of(e, 0.5).count()).isEqualTo(1);
+        // 均等配分そのものより強い取引だけでつなぐ（しきい値 > 1）と、全員が別々になります。
+        assertThat(ContributionBlocks.of(e, 1.5).count()).isEqualTo(n);
+    }
+
+    // ブロック数が DIRECT_LIMIT を超えても、集約補正つきのブロック反復で全体のべき乗法と同じ c になるか
+    @Test
+    void testBlockSolveWithManyWeaklyCoupledBlocks() {
+        // --- 準備 (Given) ---
+        // 2人組 300 組。組の相手へ大半を払い、他の組の3人へ少額（均等配分の 0.2 倍程度）を払います。
+        int n = 600;
+        Random rnd = new Random(7);
+        double[][] e = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            double budget = 0.2 + 0.3 * rnd.nextDouble();
+            double weak = 0.2 * (1 - budget) / (n - 1);
+            e[i][i] = budget;
+            for (int t = 0; t < 3; t++) {
+                int j = rnd.nextInt(n);
+                if (j / 2 != i / 2) e[i][j] += weak;
+            }
+            double rest = 1.0;
+            for (double v : e[i]) rest -= v;
+            e[i][i ^ 1] += rest;
+        }
+        ContributionCalculator calculator = new ContributionCalculator();
+        ContributionBlocks blocks = ContributionBlocks.of(e, 0.5);
+
+        // --- 実行 (When) ---
+        SimpleMatrix expected = calculator.calculate(new SimpleMatrix(e));
+        double[] coupled = ContributionCalculator.solveCoupled(e, blocks);
+        double[] actual = calculator.calculate(e, blocks);
+
+        // --- 検証 (Then) ---
+        // 300 ブロック（> DIRECT_LIMIT=256）のまま、べき乗法へ戻らずに収束します。
+        assertThat(blocks.count()).isEqualTo(n / 2);
+        assertThat(coupled).isNotNull();
+        double total = 0.0;
+        for (int i = 0; i < n; i++) {
+            assertThat(actual[i]).isCloseTo(expected.get(i, 0), within(1e-6));
+            total += actual[i];
+        }
+        assertThat(total).isCloseTo(n, within(1e-6));
+    }
 }
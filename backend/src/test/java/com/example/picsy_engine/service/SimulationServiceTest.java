@@ -0,0 +1,156 @@
+package com.example.picsy_engine.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import com.example.picsy_engine.ContributionBlocks;
+import com.example.picsy_engine.api.dto.AddMemberRequest;
+import com.example.picsy_engine.api.dto.CompanyCreateRequest;
+import com.example.picsy_engine.api.dto.CompanyCreateRequest.CompanyOutflow;
+import com.example.picsy_engine.api.dto.CompanyCreateRequest.FounderInvest;
+import com.example.picsy_engine.api.dto.PrecisionResponse;
+import com.example.picsy_engine.api.dto.StateResponse;
+import com.example.picsy_engine.api.dto.TransactionRequest;
+import com.example.picsy_engine.api.dto.UpdateMatrixRequest;
+import com.example.picsy_engine.state.StateStore;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+
+/**
+ * SimulationService の float32 保存モードの経路を float64 と突き合わせて、
+ * またブロック分解モードで各操作後の連結成分（差分更新）を全走査と突き合わせて検査するテストクラスです。
+ */
+public class SimulationServiceTest {
+
+    private static SimulationService service(StateStore store) {
+        return new SimulationService(store, new ActionLogService(), "power");
+    }
+
+    @Test
+    void testRecoverFloatMatchesDoublePath() {
+        // --- 準備 (Given) ---
+        // 同じ初期状態の float64 / float32 のストアを用意し、C さん（id=3）をゴーストにします。
+        StateStore store64 = new StateStore("float64");
+        StateStore store32 = new StateStore("float32");
+        SimulationService s64 = service(store64);
+        SimulationService s32 = service(store32);
+        s64.ghost(3);
+        s32.ghost(3);
+        float[] ghostRow = store32.matrixCopyFloat()[2].clone();
+
+        // --- 実行 (When) ---
+        StateResponse r64 = s64.recover(0.2);
+        StateResponse r32 = s32.recover(0.2);
+
+        // --- 検証 (Then) ---
+        // 行列も c も float の丸め誤差の範囲で一致します。
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertThat(r32.matrix()[i][j]).isCloseTo(r64.matrix()[i][j], within(1e-6));
+            }
+            assertThat(r32.contributions()[i]).isCloseTo(r64.contributions()[i], within(1e-5));
+        }
+        // ゴーストの行は回収の対象外です。
+        assertThat(store32.matrixCopyFloat()[2]).containsExactly(ghostRow);
+        // float 行列のまま行和=1が保たれています。
+        for (float[] row : store32.matrixCopyFloat()) {
+            double sum = 0;
+            for (float v : row) sum += v;
+            assertThat(sum).isCloseTo(1.0, within(1e-6));
+        }
+    }
+
+    @Test
+    void testTransactFloatPathAndPrecisionDiagnostic() {
+        // --- 準備 (Given) ---
+        SimulationService s64 = service(new StateStore("float64"));
+        SimulationService s32 = service(new StateStore("float32"));
+
+        // --- 実行 (When) ---
+        // A→B、B→C の取引を何度か繰り返し、float の丸めを蓄積させます。
+        StateResponse r64 = null, r32 = null;
+        for (int k = 0; k < 10; k++) {
+            TransactionRequest ab = new TransactionRequest(1, 2, 0.01);
+            TransactionRequest bc = new TransactionRequest(2, 3, 0.02);
+            s64.transact(ab);
+            s32.transact(ab);
+            r64 = s64.transact(bc);
+            r32 = s32.transact(bc);
+        }
+        PrecisionResponse report = s32.precisionReport();
+
+        // --- 検証 (Then) ---
+        for (int i = 0; i < 3; i++) {
+            assertThat(r32.contributions()[i]).isCloseTo(r64.contributions()[i], within(1e-5));
+            assertThat(r32.purchasingPower()[i]).isCloseTo(r64.purchasingPower()[i], within(1e-5));
+        }
+        // 精度診断は現在の状態について float32 と float64 の差を返します。
+        assertThat(report.storage()).isEqualTo("float32");
+        assertThat(report.members()).isEqualTo(3);
+        assertThat(report.rowSumError()).isLessThan(1e-6);
+        assertThat(report.maxAbsDeviation()).isLessThan(1e-5);
+        assertThat(report.l1Deviation()).isGreaterThanOrEqualTo(report.maxAbsDeviation());
+    }
+
+    // ブロック分解モード：各操作で差分更新した連結成分が、全走査の結果と一致するか（両方の保存モード）
+    @Test
+    void testIncrementalBlocksMatchRescanAfterEachOperation() {
+        // {A,B} と {C} に分かれた行列（B は自分の予算だけ）
+        double[][] split = {
+            {0.5, 0.5, 0.0},
+            {0.0, 1.0, 0.0},
+            {0.0, 0.0, 1.0}
+        };
+        for (String storage : List.of("float64", "float32")) {
+            // 取引 A→C：成分が結合
+            runOnSplit(storage, split, s -> s.transact(new TransactionRequest(1, 3, 0.05)), 1);
+            // 価格0の取引：非ゼロが増えないので別成分のまま
+            runOnSplit(storage, split, s -> s.transact(new TransactionRequest(1, 3, 0.0)), 2);
+            // メンバー追加：新メンバーが全員とつながる（grown）
+            runOnSplit(storage, split, s -> s.addMember(new AddMemberRequest("D")), 1);
+            // 会社設立（一部出資）：A の既存取引は残り、{A,B,X} と {C}
+            runOnSplit(storage, split, s -> s.createCompany(company(0.1, 2)), 2);
+            // 会社設立（全額出資）：A→B が0になるので数え直し、{A,X,C} と {B}
+            runOnSplit(storage, split, s -> s.createCompany(company(0.5, 3)), 2);
+            // 自然回収 γ<1：非ゼロ構造は変わらない（取引で結合した後に回収）
+            runOnSplit(storage, split, s -> {
+                s.transact(new TransactionRequest(1, 3, 0.05));
+                s.recover(0.5);
+            }, 1);
+            // 自然回収 γ=1：非対角がすべて消えるので数え直し、全員が別成分
+            runOnSplit(storage, split, s -> {
+                s.transact(new TransactionRequest(1, 3, 0.05));
+                s.recover(1.0);
+            }, 3);
+        }
+    }
+
+    /** split を入れた blocks モードのサービスで操作し、成分と c を検証する */
+    private static void runOnSplit(String storage, double[][] split, Consumer<SimulationService> operation, int expectedCount) {
+        // --- 準備 (Given) ---
+        StateStore store = new StateStore(storage);
+        SimulationService blocks = new SimulationService(store, new ActionLogService(), "blocks");
+        blocks.updateMatrix(new UpdateMatrixRequest(split)); // 応答を作る過程で成分が計算・保持される
+
+        // --- 実行 (When) ---
+        operation.accept(blocks);
+
+        // --- 検証 (Then) ---
+        ContributionBlocks cached = store.matrixState().blocks();
+        assertThat(cached).isEqualTo(ContributionBlocks.of(store.matrixCopy()));
+        assertThat(cached.count()).isEqualTo(expectedCount);
+        // 保持している成分で解いた c は、全体のべき乗法と一致します。
+        double[] expected = service(store).getState().contributions();
+        double[] actual = blocks.getState().contributions();
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(actual[i]).as(storage + " c[" + i + "]").isCloseTo(expected[i], within(1e-5));
+        }
+    }
+
+    /** 創業者 A（id=1）が invest を出資し、予算0.3、残りを outflowId へ配分する会社 */
+    private static CompanyCreateRequest company(double invest, int outflowId) {
+        return new CompanyCreateRequest("X", 0.3,
+            List.of(new FounderInvest(1, invest)),
+            List.of(new CompanyOutflow(outflowId, 1.0)));
+    }
+}
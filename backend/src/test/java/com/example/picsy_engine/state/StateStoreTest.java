@@ -0,0 +1,137 @@
+package com.example.picsy_engine.state;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import com.example.picsy_engine.ContributionBlocks;
+import com.example.picsy_engine.transfer.MatrixFormat;
+import com.example.picsy_engine.transfer.MatrixReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * StateStore の保存モード（float32）と、ブロック分解用の連結成分の差分更新を検査するテストクラスです。
+ */
+public class StateStoreTest {
+
+    @Test
+    void testFloat32RoundTrip() {
+        // --- 準備 (Given) ---
+        StateStore store = new StateStore("float32");
+        double[][] m = {
+            {0.1, 0.2, 0.7},
+            {0.3, 0.3, 0.4},
+            {0.6, 0.15, 0.25}
+        };
+
+        // --- 実行 (When) ---
+        store.replaceMatrix(m);
+        float[][] f = store.matrixCopyFloat();
+        double[][] d = store.matrixCopy();
+
+        // --- 検証 (Then) ---
+        // float のコピーは入力を float に丸めた値そのもの、double のコピーはそれを拡張した値です。
+        assertThat(store.isSinglePrecision()).isTrue();
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertThat((double) f[i][j]).isEqualTo((double) (float) m[i][j]);
+                assertThat(d[i][j]).isEqualTo((double) f[i][j]);
+                assertThat(d[i][j]).isCloseTo(m[i][j], within(1e-7));
+            }
+        }
+
+        // コピーを書き換えてもストアは変わりません。
+        f[0][0] = 9f;
+        d[0][0] = 9.0;
+        assertThat((double) store.matrixCopyFloat()[0][0]).isEqualTo((double) 0.1f);
+
+        // float 行列で置き換えた場合はそのままの値が保存されます（スナップショットも同じ値）。
+        float[][] g = {
+            {0.5f, 0.25f, 0.25f},
+            {0.125f, 0.375f, 0.5f},
+            {1f, 0f, 0f}
+        };
+        store.replaceMatrix(g);
+        double[] row = new double[3];
+        for (int i = 0; i < 3; i++) {
+            assertThat(store.matrixCopyFloat()[i]).containsExactly(g[i]);
+            store.snapshot().row(i, row);
+            for (int j = 0; j < 3; j++) assertThat(row[j]).isEqualTo((double) g[i][j]);
+        }
+    }
+
+    @Test
+    void testUnknownStorageIsRejected() {
+        assertThatThrownBy(() -> new StateStore("float16"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("picsy.matrix.storage");
+    }
+
+    // 取引・丸ごと置換・取込のあと、保持している連結成分が全走査の結果と一致するか
+    @Test
+    void testCachedBlocksFollowLinkingReplaceAndImport() throws IOException {
+        // --- 準備 (Given) ---
+        // {A,B} と {C} に分かれた行列。matrixState() で成分を計算・保持させます。
+        StateStore store = new StateStore("float64");
+        double[][] split = {
+            {0.5, 0.5, 0.0},
+            {0.4, 0.6, 0.0},
+            {0.0, 0.0, 1.0}
+        };
+        double[][] linked = {
+            {0.4, 0.5, 0.1},
+            {0.4, 0.6, 0.0},
+            {0.0, 0.0, 1.0}
+        };
+        store.replaceMatrix(split);
+        assertBlocksMatchRescan(store, 2);
+
+        // --- 実行 & 検証 (When / Then) ---
+        // 取引 A→C で新しい非ゼロができると、1つの成分にまとまります。
+        store.replaceMatrixLinking(linked, 0, 2);
+        assertBlocksMatchRescan(store, 1);
+
+        // 丸ごと置換では保持していた成分を捨てて数え直します。
+        store.replaceMatrix(split);
+        assertBlocksMatchRescan(store, 2);
+
+        // 価格0の取引（E_AC は0のまま）では成分はつながりません。
+        store.replaceMatrixLinking(split, 0, 2);
+        assertBlocksMatchRescan(store, 2);
+
+        // 取込でも名簿ごと置き換わるので数え直します。
+        String csv = "1,a,PERSON,ACTIVE,0.5,0.5,0,0\n2,b,PERSON,ACTIVE,0,0.5,0.5,0\n"
+            + "3,c,PERSON,ACTIVE,0,0,1,0\n4,d,PERSON,ACTIVE,0,0,0,1\n";
+        StateStore.Importer importer = store.newImporter();
+        MatrixReader.read(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), MatrixFormat.CSV, 100, importer);
+        importer.commit();
+        assertBlocksMatchRescan(store, 2);
+    }
+
+    // 結合しきい値より小さい取引では成分をつながないか
+    @Test
+    void testLinkingRespectsCouplingThreshold() {
+        StateStore store = new StateStore("float64", 0.5);
+        store.replaceMatrix(new double[][]{
+            {0.5, 0.5, 0.0},
+            {0.4, 0.6, 0.0},
+            {0.0, 0.0, 1.0}
+        });
+        assertThat(store.matrixState().blocks().count()).isEqualTo(2);
+
+        // 下限は 0.5 × (1-E_AA)/2。E_AC = 0.1 < 0.15 なので別ブロックのまま、0.3 ≥ 0.2 ならつながります。
+        store.replaceMatrixLinking(new double[][]{{0.4, 0.5, 0.1}, {0.4, 0.6, 0.0}, {0.0, 0.0, 1.0}}, 0, 2);
+        assertThat(store.matrixState().blocks()).isEqualTo(ContributionBlocks.of(store.matrixCopy(), 0.5));
+        assertThat(store.matrixState().blocks().count()).isEqualTo(2);
+        store.replaceMatrixLinking(new double[][]{{0.2, 0.5, 0.3}, {0.4, 0.6, 0.0}, {0.0, 0.0, 1.0}}, 0, 2);
+        assertThat(store.matrixState().blocks().count()).isEqualTo(1);
+    }
+
+    private static void assertBlocksMatchRescan(StateStore store, int expectedCount) {
+        ContributionBlocks cached = store.matrixState().blocks();
+        assertThat(cached).isEqualTo(ContributionBlocks.of(store.matrixCopy()));
+        assertThat(cached.count()).isEqualTo(expectedCount);
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.picsy_engine.tools;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import com.example.picsy_engine.tools.LoadGenerator.Kind;
+import com.example.picsy_engine.tools.LoadGenerator.Op;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 負荷生成ツールの操作列の生成・ログの再生・分位計算を検査するテストクラスです（サーバは不要）。
+ */
+public class LoadGeneratorTest {
+
+    @Test
+    void testParseMixAndSeededGeneration() {
+        // --- 準備 (Given) ---
+        Map<Kind, Integer> mix = LoadGenerator.parseMix("state=60, transaction=20 ,ghost=0,recovery=20");
+
+        // --- 実行 (When) ---
+        // 同じ seed から2回生成します。
+        List<Kind> first = kinds(LoadGenerator.mixOps(mix, 500, new Random(7)));
+        List<Kind> second = kinds(LoadGenerator.mixOps(mix, 500, new Random(7)));
+
+        // --- 検証 (Then) ---
+        assertThat(mix.get(Kind.STATE)).isEqualTo(60);
+        assertThat(mix.get(Kind.GHOST)).isEqualTo(0);
+        // 件数どおり、同じ seed なら同じ操作列、重み0の操作は出ません。
+        assertThat(first).hasSize(500);
+        assertThat(first).isEqualTo(second);
+        assertThat(first.contains(Kind.GHOST)).isFalse();
+        assertThat(first.contains(Kind.RECOVERY)).isTrue();
+
+        // 不正な指定はエラーです。
+        assertThatThrownBy(() -> LoadGenerator.parseMix("state=1,teleport=1"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("unknown op kind");
+        assertThatThrownBy(() -> LoadGenerator.parseMix("state"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("bad mix entry");
+        assertThatThrownBy(() -> LoadGenerator.parseMix("state=-1,member=2"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("negative weight");
+        assertThatThrownBy(() -> LoadGenerator.parseMix("state=0"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("mix sum <= 0");
+    }
+
+    @Test
+    void testReplayParsesLogLinesInTimeOrder() {
+        // --- 準備 (Given) ---
+        // /api/logs は新しい順なので、時刻の降順で並んだログを用意します（空白入りの名前も含む）。
+        List<String> lines = List.of(
+            "[2026-01-01T10:00:05+09:00] [COMPANY_CREATE] id=7 name=Blue Sky Bakery budget=0.3",
+            "[2026-01-01T10:00:04+09:00] [MATRIX] matrix replaced & normalized",
+            "[2026-01-01T10:00:03+09:00] [GHOST] id=2",
+            "[2026-01-01T10:00:02+09:00] [MEMBER_ADD] id=6 name=Jane Doe",
+            "[2026-01-01T10:00:01+09:00] [TRANSACTION] buyer=1, seller=3, delta=0.02, alpha=0.019",
+            "[2026-01-01T10:00:00+09:00] [RECOVERY] gamma=0.1"
+        );
+
+        // --- 実行 (When) ---
+        List<Op> ops = LoadGenerator.replayOps(lines, new Random(1));
+
+        // --- 検証 (Then) ---
+        // 時刻の昇順に並び、MATRIX は再生されません。
+        assertThat(kinds(ops.iterator()))
+            .containsExactly(Kind.RECOVERY, Kind.TRANSACTION, Kind.MEMBER, Kind.GHOST, Kind.COMPANY);
+        assertThat(ops.get(0).value()).isEqualTo(0.1);
+        assertThat(ops.get(1).ids()[0]).isEqualTo(1);
+        assertThat(ops.get(1).ids()[1]).isEqualTo(3);
+        assertThat(ops.get(1).value()).isEqualTo(0.02);
+        assertThat(ops.get(2).name()).isEqualTo("Jane Doe");
+        assertThat(ops.get(3).ids()[0]).isEqualTo(2);
+        assertThat(ops.get(4).name()).isEqualTo("Blue Sky Bakery");
+        assertThat(ops.get(4).value()).isEqualTo(0.3);
+
+        // 本文の分解：値は次の "key=" の直前まで
+        assertThat(LoadGenerator.parseKv("id=5 name=a b  c budget=0.5"))
+            .isEqualTo(Map.of("id", "5", "name", "a b  c", "budget", "0.5"));
+    }
+
+    @Test
+    void testHistogramPercentiles() {
+        // --- 準備 (Given) ---
+        // 1ms〜1000ms を 1ms 刻みで記録します（2つに分けて merge）。
+        LoadGenerator.Histogram h = new LoadGenerator.Histogram();
+        LoadGenerator.Histogram other = new LoadGenerator.Histogram();
+        for (int ms = 1; ms <= 1000; ms++) (ms % 2 == 0 ? h : other).record(ms * 1_000_000L);
+
+        // --- 実行 (When) ---
+        h.merge(other);
+
+        // --- 検証 (Then) ---
+        // 相対誤差 1/32 以内で分位が求まり、最大値は正確です。
+        assertThat(h.count()).isEqualTo(1000);
+        assertThat(h.max()).isEqualTo(1000_000_000L);
+        assertThat((double) h.valueAt(0.50)).isCloseTo(500e6, within(500e6 / 32));
+        assertThat((double) h.valueAt(0.99)).isCloseTo(990e6, within(990e6 / 32));
+        assertThat((double) h.valueAt(0.999)).isCloseTo(999e6, within(999e6 / 32));
+        assertThat(h.valueAt(1.0)).isEqualTo(1000_000_000L);
+        // 分位は記録した値以上を返します（過小評価しない）。
+        assertThat(h.valueAt(0.50)).isGreaterThanOrEqualTo(500_000_000L);
+
+        // 32 未満の値は正確です。
+        LoadGenerator.Histogram small = new LoadGenerator.Histogram();
+        for (int v = 0; v < 32; v++) small.record(v);
+        assertThat(small.valueAt(0.5)).isEqualTo(15);
+        assertThat(small.valueAt(1.0)).isEqualTo(31);
+    }
+
+    // GET /api/logs の応答（JSON 配列、整形あり/なし）と1行1件のテキストが同じ操作列になるか
+    @Test
+    void testReplayAcceptsLogsJsonAndPlainLines() throws IOException {
+        // --- 準備 (Given) ---
+        ObjectMapper json = new ObjectMapper();
+        List<String> logs = List.of(
+            "[2026-01-01T10:00:02+09:00] [GHOST] id=2",
+            "[2026-01-01T10:00:01+09:00] [MEMBER_ADD] id=6 name=Jane Doe",
+            "[2026-01-01T10:00:00+09:00] [RECOVERY] gamma=0.1"
+        );
+        String compact = json.writeValueAsString(logs);
+        String pretty = json.writerWithDefaultPrettyPrinter().writeValueAsString(logs);
+        String plain = String.join("\n", logs) + "\n\n";
+
+        // --- 実行 & 検証 (When / Then) ---
+        for (String content : List.of(compact, pretty, plain)) {
+            List<String> entries = LoadGenerator.replayEntries(content, json);
+            assertThat(entries).isEqualTo(logs);
+            List<Op> ops = LoadGenerator.replayOps(entries, new Random(1));
+            assertThat(kinds(ops.iterator())).containsExactly(Kind.RECOVERY, Kind.MEMBER, Kind.GHOST);
+            assertThat(ops.get(1).name()).isEqualTo("Jane Doe");
+        }
+        assertThat(LoadGenerator.replayEntries("[]", json)).hasSize(0);
+    }
+
+    // 解釈できない件は読み飛ばさず、件番号付きで失敗するか
+    @Test
+    void testReplayRejectsMalformedEntries() {
+        assertThatThrownBy(() -> LoadGenerator.replayOps(List.of(
+                "[2026-01-01T10:00:00+09:00] [RECOVERY] gamma=0.1",
+                "\"[2026-01-01T10:00:01+09:00] [GHOST] id=2\","), new Random(1)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("replay entry 2: not an action log entry");
+        assertThatThrownBy(() -> LoadGenerator.replayOps(List.of(
+                "[yesterday] [RECOVERY] gamma=0.1"), new Random(1)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("replay entry 1:");
+        assertThatThrownBy(() -> LoadGenerator.replayOps(List.of(
+                "[2026-01-01T10:00:00+09:00] [TRANSACTION] buyer=1"), new Random(1)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("replay entry 1: missing seller=");
+        assertThatThrownBy(() -> LoadGenerator.replayOps(List.of(
+                "[2026-01-01T10:00:00+09:00] [MATRIX] matrix replaced & normalized"), new Random(1)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("no replayable entries");
+    }
+
+    // 名簿は members だけを読み、前後の matrix などは木にしないで読み飛ばすか
+    @Test
+    void testParseRosterReadsMembersOnly() {
+        ObjectMapper json = new ObjectMapper();
+        String body = "{\"note\":{\"nested\":[1,2]},\"members\":["
+            + "{\"id\":1,\"name\":\"A\",\"type\":\"PERSON\",\"status\":\"ACTIVE\"},"
+            + "{\"id\":2,\"name\":\"B\",\"type\":\"PERSON\",\"status\":\"GHOST\"},"
+            + "{\"id\":7,\"name\":\"X\",\"type\":\"COMPANY\",\"status\":\"ACTIVE\"}],"
+            + "\"matrix\":[[0.5,0.5],[0.5,0.5]],\"contributions\":[1,1]}";
+
+        LoadGenerator.Roster roster = LoadGenerator.parseRoster(
+            new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), json);
+
+        assertThat(roster.all()).containsExactly(1, 7);
+        assertThat(roster.companies()).containsExactly(7);
+        // members の無い応答（decompose など以外の形）では名簿を変えません。
+        assertThat(LoadGenerator.parseRoster(
+            new ByteArrayInputStream("{\"matrix\":[[1]]}".getBytes(StandardCharsets.UTF_8)), json)).isNull();
+    }
+
+    private static List<Kind> kinds(Iterator<Op> ops) {
+        List<Kind> out = new ArrayList<>();
+        while (ops.hasNext()) out.add(ops.next().kind());
+        return out;
+    }
+}
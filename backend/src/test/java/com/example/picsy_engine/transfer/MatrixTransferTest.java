@@ -0,0 +1,240 @@
+package com.example.picsy_engine.transfer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import com.example.picsy_engine.domain.MemberStatus;
+import com.example.picsy_engine.domain.MemberType;
+import com.example.picsy_engine.state.StateStore;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 一括取込/書出し（MatrixReader / MatrixWriter / StateStore.Importer）の検査。
+ */
+public class MatrixTransferTest {
+
+    private static final int MAX_MEMBERS = 1000;
+
+    // 書き出した内容を別のストアへ取り込むと、名簿と行列がそのまま再現されるか（全形式）
+    @Test
+    void testRoundTripAllFormats() throws IOException {
+        for (MatrixFormat format : MatrixFormat.values()) {
+            // --- 準備 (Given) ---
+            StateStore source = new StateStore("float64");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            MatrixWriter.write(source.snapshot(), format, out);
+
+            // --- 実行 (When) ---
+            StateStore target = new StateStore("float64");
+            StateStore.Importer importer = target.newImporter();
+            int n = MatrixReader.read(new ByteArrayInputStream(out.toByteArray()), format, MAX_MEMBERS, importer);
+            importer.commit();
+
+            // --- 検証 (Then) ---
+            assertThat(n).isEqualTo(3);
+            assertThat(target.listMembers()).extracting(m -> m.getName()).containsExactly("A", "B", "C");
+            double[][] expected = source.matrixCopy();
+            double[][] actual = target.matrixCopy();
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    assertThat(actual[i][j]).as(format + " (" + i + "," + j + ")").isCloseTo(expected[i][j], within(1e-12));
+                }
+            }
+        }
+    }
+
+    // 疎形式は行ごとに正規化され、行番号が逆順なら行番号付きのエラーになるか
+    @Test
+    void testTripletNormalizesRowsAndRejectsUnsortedEntries() throws IOException {
+        String ok = "M,10,x,PERSON,ACTIVE\nM,11,\"y, z\",COMPANY,ACTIVE\nE,0,0,1\nE,0,1,3\nE,1,0,2\n";
+        StateStore store = new StateStore("float64");
+        StateStore.Importer importer = store.newImporter();
+        MatrixReader.read(new ByteArrayInputStream(ok.getBytes(StandardCharsets.UTF_8)), MatrixFormat.TRIPLET, MAX_MEMBERS, importer);
+        importer.commit();
+
+        assertThat(store.listMembers()).extracting(m -> m.getName()).containsExactly("x", "y, z");
+        assertThat(store.matrixCopy()[0]).containsExactly(0.25, 0.75);
+        assertThat(store.indexOfId(11)).contains(1);
+
+        String unsorted = "M,1,a,PERSON,ACTIVE\nM,2,b,PERSON,ACTIVE\nE,0,1,1\nE,1,0,1\nE,0,0,1\n";
+        assertThatThrownBy(() -> MatrixReader.read(
+                new ByteArrayInputStream(unsorted.getBytes(StandardCharsets.UTF_8)), MatrixFormat.TRIPLET, MAX_MEMBERS, store.newImporter()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("line 5: entries must be sorted by row");
+    }
+
+    // float32 保存のストア同士で書き出し→取り込みすると、float の値がそのまま再現されるか（全形式）
+    @Test
+    void testRoundTripAllFormatsFloat32() throws IOException {
+        for (MatrixFormat format : MatrixFormat.values()) {
+            // --- 準備 (Given) ---
+            // float で正確に表せない値を含む行列にします。
+            StateStore source = new StateStore("float32");
+            source.replaceMatrix(new double[][]{
+                {0.1, 0.2, 0.7},
+                {1.0 / 3, 1.0 / 3, 1.0 / 3},
+                {0.05, 0.9, 0.05}
+            });
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            MatrixWriter.write(source.snapshot(), format, out);
+
+            // --- 実行 (When) ---
+            StateStore target = new StateStore("float32");
+            StateStore.Importer importer = target.newImporter();
+            MatrixReader.read(new ByteArrayInputStream(out.toByteArray()), format, MAX_MEMBERS, importer);
+            importer.commit();
+
+            // --- 検証 (Then) ---
+            float[][] expected = source.matrixCopyFloat();
+            float[][] actual = target.matrixCopyFloat();
+            for (int i = 0; i < 3; i++) {
+                assertThat(Arrays.equals(actual[i], expected[i]))
+                    .as(format + " row " + i + ": " + Arrays.toString(actual[i]) + " vs " + Arrays.toString(expected[i]))
+                    .isTrue();
+            }
+        }
+    }
+
+    // バイナリのヘッダが壊れている・n が上限を超える・途中で切れている入力は IllegalArgumentException になるか
+    @Test
+    void testBinaryRejectsMalformedInput() throws IOException {
+        // 不正なマジック・バージョン
+        assertRejected(binary(0x12345678, 1, 3, 8), "not a PICSY binary matrix");
+        assertRejected(binary(MatrixReader.BINARY_MAGIC, 2, 3, 8), "unsupported version: 2");
+
+        // n が上限を超える場合は、確保（begin）の前に拒否されます。
+        assertRejected(binary(MatrixReader.BINARY_MAGIC, 1, Integer.MAX_VALUE, 8), "too many members");
+        assertRejected(binary(MatrixReader.BINARY_MAGIC, 1, MAX_MEMBERS + 1, 4), "too many members");
+
+        // 途中で切れた入力（ヘッダの途中・行の途中）
+        assertRejected(Arrays.copyOf(binary(MatrixReader.BINARY_MAGIC, 1, 3, 8), 6), "unexpected end of input");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MatrixWriter.write(new StateStore("float64").snapshot(), MatrixFormat.BINARY, out);
+        byte[] full = out.toByteArray();
+        assertRejected(Arrays.copyOf(full, full.length - 5), "unexpected end of input");
+    }
+
+    // テキスト形式でも上限を超えるメンバー数は拒否されるか
+    @Test
+    void testTextFormatsRejectOversizedInput() {
+        String csv = "1,a,PERSON,ACTIVE,1,0,0\n2,b,PERSON,ACTIVE,0,1,0\n3,c,PERSON,ACTIVE,0,0,1\n";
+        assertThatThrownBy(() -> MatrixReader.read(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), MatrixFormat.CSV, 2, rejectingSink()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("line 1: too many members: 3 (max 2)");
+
+        String triplet = "M,1,a,PERSON,ACTIVE\nM,2,b,PERSON,ACTIVE\nM,3,c,PERSON,ACTIVE\nE,0,0,1\n";
+        assertThatThrownBy(() -> MatrixReader.read(
+                new ByteArrayInputStream(triplet.getBytes(StandardCharsets.UTF_8)), MatrixFormat.TRIPLET, 2, rejectingSink()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("line 3: too many members: 3 (max 2)");
+    }
+
+    // NaN/無限大の値は正規化を素通りせず、行番号（バイナリでは行インデックス）付きで拒否されるか
+    @Test
+    void testNonFiniteValuesAreRejected() throws IOException {
+        assertTextRejected("1,a,PERSON,ACTIVE,1,0\n2,b,PERSON,ACTIVE,NaN,1\n", MatrixFormat.CSV,
+            "line 2: non-finite value: NaN");
+        assertTextRejected("1\ta\tPERSON\tACTIVE\tInfinity\t0\n", MatrixFormat.TSV,
+            "line 1: non-finite value: Infinity");
+        assertTextRejected("M,1,a,PERSON,ACTIVE\nM,2,b,PERSON,ACTIVE\nE,0,0,1\nE,1,1,-Infinity\n", MatrixFormat.TRIPLET,
+            "line 4: non-finite value: -Infinity");
+        // 有限な値の加算であふれる場合（同じ要素の重複・行和）も拒否します。
+        assertTextRejected("M,1,a,PERSON,ACTIVE\nE,0,0,1e308\nE,0,0,1e308\n", MatrixFormat.TRIPLET,
+            "line 3: value overflow at (0,0)");
+        assertTextRejected("1,a,PERSON,ACTIVE,1e308,1e308\n2,b,PERSON,ACTIVE,0,1\n", MatrixFormat.CSV,
+            "line 1: Row 0 sum is not finite");
+
+        for (int precision : new int[]{4, 8}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataOutputStream d = new DataOutputStream(out);
+            d.write(binary(MatrixReader.BINARY_MAGIC, 1, 2, precision));
+            for (int id = 1; id <= 2; id++) {
+                d.writeInt(id);
+                d.writeUTF("m" + id);
+                d.writeByte(MemberType.PERSON.ordinal());
+                d.writeByte(MemberStatus.ACTIVE.ordinal());
+            }
+            double[] values = {1, 0, 0.5, Double.NaN};
+            for (double v : values) {
+                if (precision == 4) d.writeFloat((float) v); else d.writeDouble(v);
+            }
+            d.flush();
+            assertRejected(out.toByteArray(), "Row 1: non-finite value at column 1");
+        }
+    }
+
+    // 密形式の見出し行は、列数が n と一致し列のメンバーIDが各行の id と同じ順でなければ拒否されるか
+    @Test
+    void testDenseHeaderMustMatchRows() {
+        assertTextRejected("id,name,type,status,1,2\n2,b,PERSON,ACTIVE,0,1\n1,a,PERSON,ACTIVE,1,0\n", MatrixFormat.CSV,
+            "line 2: row id 2 does not match header column 0 (id 1)");
+        assertTextRejected("id,name,type,status,1,2,3\n1,a,PERSON,ACTIVE,1,0\n2,b,PERSON,ACTIVE,0,1\n", MatrixFormat.CSV,
+            "line 2: header has 3 member columns, row has 2 values");
+        assertTextRejected("id,name,type,status,1,x\n", MatrixFormat.CSV, "line 1:");
+        assertTextRejected("1,a,PERSON,ACTIVE,1\nid,name,type,status,1\n", MatrixFormat.CSV, "line 2: unexpected header");
+    }
+
+    // 改行の無い長い行は、上限（maxMembers から決まる文字数）を超えた時点で拒否されるか
+    @Test
+    void testTextFormatsRejectOverlongLine() {
+        String digits = "0".repeat(MatrixReader.MAX_NAME_CHARS + 6 * MatrixReader.MAX_FIELD_CHARS + 1);
+        assertThatThrownBy(() -> MatrixReader.read(
+                new ByteArrayInputStream(("1,a,PERSON,ACTIVE," + digits).getBytes(StandardCharsets.UTF_8)), MatrixFormat.CSV, 2, rejectingSink()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("line 1: line too long");
+        assertThatThrownBy(() -> MatrixReader.read(
+                new ByteArrayInputStream(("M,1,a,PERSON,ACTIVE\r\nE,0,0," + digits).getBytes(StandardCharsets.UTF_8)), MatrixFormat.TRIPLET, 2, rejectingSink()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("line 2: line too long");
+    }
+
+    private static void assertTextRejected(String input, MatrixFormat format, String message) {
+        assertThatThrownBy(() -> MatrixReader.read(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), format, MAX_MEMBERS, rejectingSink()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining(message);
+    }
+
+    private static void assertRejected(byte[] input, String message) {
+        assertThatThrownBy(() -> MatrixReader.read(
+                new ByteArrayInputStream(input), MatrixFormat.BINARY, MAX_MEMBERS, rejectingSink()))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining(message);
+    }
+
+    /** ヘッダ（magic, version, n, 精度）だけのバイナリ */
+    private static byte[] binary(int magic, int version, int n, int precision) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream d = new DataOutputStream(out);
+        d.writeInt(magic);
+        d.writeInt(version);
+        d.writeInt(n);
+        d.writeByte(precision);
+        d.flush();
+        return out.toByteArray();
+    }
+
+    /** 上限を超える n で begin（n×n の確保）が呼ばれたらテスト失敗にするシンク。それ以外は Importer へ渡す */
+    private static MatrixSink rejectingSink() {
+        StateStore store = new StateStore("float64");
+        StateStore.Importer importer = store.newImporter();
+        return new MatrixSink() {
+            @Override public void begin(int n) {
+                if (n > MAX_MEMBERS) throw new AssertionError("begin(" + n + ") called before size check");
+                importer.begin(n);
+            }
+            @Override public void member(int index, int id, String name, MemberType type, MemberStatus status) {
+                importer.member(index, id, name, type, status);
+            }
+            @Override public void row(int index, double[] values) { importer.row(index, values); }
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.picsy_engine.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import org.junit.jupiter.api.Test;
+
+/**
+ * MatrixUtils の float 版の行正規化を検査するテストクラスです。
+ */
+public class MatrixUtilsTest {
+
+    @Test
+    void testNormalizeFloatRowsClampsNegativesAndSumsToOne() {
+        // --- 準備 (Given) ---
+        // 負の値を含む行と、合計が1でない行を用意します。
+        float[][] m = {
+            {-1f, 1f, 3f},
+            {2f, 2f, 0f},
+            {0.1f, 0.2f, 0.7f}
+        };
+
+        // --- 実行 (When) ---
+        MatrixUtils.normalizeRowsInPlace(m);
+
+        // --- 検証 (Then) ---
+        // 負の値は0に切り上げられ、残りで行和=1になります。
+        assertThat(m[0]).containsExactly(0f, 0.25f, 0.75f);
+        assertThat(m[1]).containsExactly(0.5f, 0.5f, 0f);
+        for (float[] row : m) {
+            double sum = 0;
+            for (float v : row) sum += v;
+            assertThat(sum).isCloseTo(1.0, within(1e-6));
+        }
+    }
+
+    @Test
+    void testNormalizeFloatRowsRejectsZeroRow() {
+        // 負の値しかない行は非負化するとゼロ行になるのでエラーです。
+        float[][] m = {
+            {0.5f, 0.5f},
+            {-1f, 0f}
+        };
+        assertThatThrownBy(() -> MatrixUtils.normalizeRowsInPlace(m))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Row 1 sum is zero");
+    }
+}